@@ -0,0 +1,103 @@
+package com.platform.common.upload.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import com.platform.common.upload.key.TimeBucketFileKeyStrategy;
+import com.platform.common.upload.multipart.CheckpointJournal;
+import com.platform.common.upload.multipart.MultipartUploadEngine;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.impl.UploadLocalServiceImpl;
+import com.platform.common.upload.service.impl.UploadMinioServiceImpl;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测试用存储服务：local写临时目录，minio连接进程内S3服务
+ */
+public class BenchmarkBackend implements Closeable {
+
+    private final File workDir;
+
+    private final S3MockServer s3MockServer;
+
+    private final AnnotationConfigApplicationContext context;
+
+    private final UploadService uploadService;
+
+    public BenchmarkBackend(String uploadType) throws IOException {
+        this.workDir = Files.createTempDirectory("upload-jmh").toFile();
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("upload.uploadType", uploadType);
+        propertyMap.put("upload.multipart.checkpointDir", new File(workDir, "checkpoint").getPath());
+        Class<?> serviceClass;
+        switch (uploadType) {
+            case "local":
+                this.s3MockServer = null;
+                File rootPath = new File(workDir, "root");
+                FileUtil.mkdir(rootPath);
+                propertyMap.put("platform.rootPath", rootPath.getPath());
+                propertyMap.put("upload.serverUrl", "http://127.0.0.1");
+                serviceClass = UploadLocalServiceImpl.class;
+                break;
+            case "minio":
+                this.s3MockServer = new S3MockServer();
+                propertyMap.put("upload.serverUrl", s3MockServer.getEndpoint());
+                propertyMap.put("upload.accessKey", "benchmark");
+                propertyMap.put("upload.secretKey", "benchmark");
+                propertyMap.put("upload.bucket", "benchmark");
+                propertyMap.put("upload.prefix", "jmh");
+                serviceClass = UploadMinioServiceImpl.class;
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的存储类型：" + uploadType);
+        }
+        this.context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", propertyMap));
+        context.register(PropertySourcesPlaceholderConfigurer.class, TimeBucketFileKeyStrategy.class
+                , CheckpointJournal.class, MultipartUploadEngine.class, serviceClass);
+        context.refresh();
+        this.uploadService = context.getBean(UploadService.class);
+    }
+
+    public UploadService getUploadService() {
+        return uploadService;
+    }
+
+    /**
+     * 生成指定大小的测试文件
+     */
+    public File createFile(long size) throws IOException {
+        File file = new File(workDir, "source-" + size + ".bin");
+        byte[] buffer = new byte[64 * 1024];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte) (i * 31 + 7);
+        }
+        try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+            long remain = size;
+            while (remain > 0) {
+                int length = (int) Math.min(buffer.length, remain);
+                outputStream.write(buffer, 0, length);
+                remain -= length;
+            }
+        }
+        return file;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (s3MockServer != null) {
+            s3MockServer.close();
+        }
+        FileUtil.del(workDir);
+    }
+
+}
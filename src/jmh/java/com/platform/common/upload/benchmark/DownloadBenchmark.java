@@ -0,0 +1,78 @@
+package com.platform.common.upload.benchmark;
+
+import com.platform.common.upload.service.UploadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件下载（并发数通过 -t 指定）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DownloadBenchmark {
+
+    @Param({"local", "minio"})
+    private String uploadType;
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    private long fileSize;
+
+    private BenchmarkBackend backend;
+
+    private UploadService uploadService;
+
+    private String fileKey;
+
+    /**
+     * 每个线程一个读缓冲区
+     */
+    @State(Scope.Thread)
+    public static class Buffer {
+
+        private final byte[] data = new byte[64 * 1024];
+
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backend = new BenchmarkBackend(uploadType);
+        uploadService = backend.getUploadService();
+        fileKey = uploadService.uploadFile(backend.createFile(fileSize)).getFileKey();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Benchmark
+    public long getInputStream(Buffer buffer) throws Exception {
+        long total = 0;
+        try (InputStream inputStream = uploadService.getInputStream(fileKey, 0, -1)) {
+            int length;
+            while ((length = inputStream.read(buffer.data)) != -1) {
+                total += length;
+            }
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,379 @@
+package com.platform.common.upload.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.core.util.XmlUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 进程内S3兼容服务（仅用于性能测试，不校验签名）
+ * <p>
+ * 支持MinIO客户端用到的接口：存储桶区域、对象上传/下载/范围读取/删除、复制、分片上传（含分片复制）、批量删除、列举
+ * 对象保存在临时目录，大文件不占用内存
+ */
+public class S3MockServer implements Closeable {
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private static final String NAMESPACE = " xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"";
+
+    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Path dataDir;
+
+    /**
+     * bucket/key -> 对象
+     */
+    private final Map<String, S3Object> objectMap = new ConcurrentHashMap<>();
+
+    /**
+     * uploadId -> 分片
+     */
+    private final Map<String, ConcurrentSkipListMap<Integer, S3Object>> uploadMap = new ConcurrentHashMap<>();
+
+    static {
+        // 关闭Nagle，避免小对象延迟被放大
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public S3MockServer() throws IOException {
+        this.dataDir = Files.createTempDirectory("s3mock");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * 服务地址
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 对象数量
+     */
+    public int getObjectCount() {
+        return objectMap.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        FileUtil.del(dataDir.toFile());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = URLUtil.decode(exchange.getRequestURI().getRawPath());
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            int index = path.indexOf('/', 1);
+            String bucket = index < 0 ? path.substring(1) : path.substring(1, index);
+            String key = index < 0 ? "" : path.substring(index + 1);
+            if (key.isEmpty()) {
+                handleBucket(exchange, method, bucket, query);
+            } else {
+                handleObject(exchange, method, bucket, key, query);
+            }
+        } catch (Exception e) {
+            sendXml(exchange, 500, "<Error><Code>InternalError</Code><Message>"
+                    + XmlUtil.escape(String.valueOf(e.getMessage())) + "</Message></Error>");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String method, String bucket, Map<String, String> query) throws IOException {
+        if ("GET".equals(method) && query.containsKey("location")) {
+            sendXml(exchange, 200, "<LocationConstraint" + NAMESPACE + "></LocationConstraint>");
+        } else if ("POST".equals(method) && query.containsKey("delete")) {
+            String body = IoUtil.read(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            for (String key : ReUtil.findAll("<Key>(.*?)</Key>", body, 1)) {
+                remove(bucket + "/" + XmlUtil.unescape(key));
+            }
+            sendXml(exchange, 200, "<DeleteResult" + NAMESPACE + "></DeleteResult>");
+        } else if ("GET".equals(method)) {
+            String prefix = bucket + "/" + query.getOrDefault("prefix", "");
+            StringBuilder builder = new StringBuilder("<ListBucketResult" + NAMESPACE + "><Name>")
+                    .append(bucket).append("</Name><Prefix>").append(XmlUtil.escape(query.getOrDefault("prefix", "")))
+                    .append("</Prefix><MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>");
+            int count = 0;
+            for (Map.Entry<String, S3Object> entry : objectMap.entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    continue;
+                }
+                S3Object object = entry.getValue();
+                builder.append("<Contents><Key>").append(XmlUtil.escape(entry.getKey().substring(bucket.length() + 1)))
+                        .append("</Key><LastModified>").append(ISO_FORMATTER.format(object.lastModified))
+                        .append("</LastModified><ETag>&quot;").append(object.etag)
+                        .append("&quot;</ETag><Size>").append(object.size)
+                        .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+                count++;
+            }
+            builder.append("<KeyCount>").append(count).append("</KeyCount></ListBucketResult>");
+            sendXml(exchange, 200, builder.toString());
+        } else {
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    private void handleObject(HttpExchange exchange, String method, String bucket, String key, Map<String, String> query) throws IOException {
+        String objectKey = bucket + "/" + key;
+        String uploadId = query.get("uploadId");
+        switch (method) {
+            case "PUT":
+                if (uploadId != null) {
+                    S3Object part = receive(exchange);
+                    S3Object old = uploadMap.get(uploadId).put(Integer.valueOf(query.get("partNumber")), part);
+                    delete(old);
+                    if (exchange.getRequestHeaders().containsKey("x-amz-copy-source")) {
+                        sendXml(exchange, 200, "<CopyPartResult><ETag>&quot;" + part.etag
+                                + "&quot;</ETag><LastModified>" + ISO_FORMATTER.format(part.lastModified)
+                                + "</LastModified></CopyPartResult>");
+                    } else {
+                        exchange.getResponseHeaders().set("ETag", "\"" + part.etag + "\"");
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                    return;
+                }
+                S3Object object = receive(exchange);
+                delete(objectMap.put(objectKey, object));
+                if (exchange.getRequestHeaders().containsKey("x-amz-copy-source")) {
+                    sendXml(exchange, 200, "<CopyObjectResult><ETag>&quot;" + object.etag
+                            + "&quot;</ETag><LastModified>" + ISO_FORMATTER.format(object.lastModified)
+                            + "</LastModified></CopyObjectResult>");
+                } else {
+                    exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                return;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    String newUploadId = IdUtil.simpleUUID();
+                    uploadMap.put(newUploadId, new ConcurrentSkipListMap<>());
+                    sendXml(exchange, 200, "<InitiateMultipartUploadResult" + NAMESPACE + "><Bucket>" + bucket
+                            + "</Bucket><Key>" + XmlUtil.escape(key) + "</Key><UploadId>" + newUploadId
+                            + "</UploadId></InitiateMultipartUploadResult>");
+                } else {
+                    String body = IoUtil.read(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                    S3Object merged = merge(uploadMap.remove(uploadId), ReUtil.findAll("<PartNumber>(\\d+)</PartNumber>", body, 1));
+                    delete(objectMap.put(objectKey, merged));
+                    sendXml(exchange, 200, "<CompleteMultipartUploadResult" + NAMESPACE + "><Bucket>" + bucket
+                            + "</Bucket><Key>" + XmlUtil.escape(key) + "</Key><ETag>&quot;" + merged.etag
+                            + "&quot;</ETag></CompleteMultipartUploadResult>");
+                }
+                return;
+            case "HEAD":
+            case "GET":
+                S3Object found = objectMap.get(objectKey);
+                if (found == null) {
+                    sendXml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message>"
+                            + "<Key>" + XmlUtil.escape(key) + "</Key><BucketName>" + bucket + "</BucketName></Error>");
+                    return;
+                }
+                send(exchange, found, "HEAD".equals(method));
+                return;
+            case "DELETE":
+                if (uploadId != null) {
+                    ConcurrentSkipListMap<Integer, S3Object> partMap = uploadMap.remove(uploadId);
+                    if (partMap != null) {
+                        partMap.values().forEach(this::delete);
+                    }
+                } else {
+                    remove(objectKey);
+                }
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            default:
+                exchange.sendResponseHeaders(405, -1);
+        }
+    }
+
+    /**
+     * 接收请求体，复制请求从源对象读取
+     */
+    private S3Object receive(HttpExchange exchange) throws IOException {
+        Path file = dataDir.resolve(IdUtil.simpleUUID());
+        String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+        if (copySource == null) {
+            // 与S3一致，直接上传的ETag为内容MD5
+            MessageDigest digest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+            try (InputStream inputStream = new DigestInputStream(exchange.getRequestBody(), digest)) {
+                Files.copy(inputStream, file);
+            }
+            return new S3Object(file, HexUtil.encodeHexStr(digest.digest()));
+        }
+        String sourceKey = URLUtil.decode(copySource.startsWith("/") ? copySource.substring(1) : copySource);
+        int versionIndex = sourceKey.indexOf("?versionId=");
+        if (versionIndex >= 0) {
+            sourceKey = sourceKey.substring(0, versionIndex);
+        }
+        S3Object source = objectMap.get(sourceKey);
+        if (source == null) {
+            throw new IOException("NoSuchKey: " + sourceKey);
+        }
+        long start = 0;
+        long end = source.size - 1;
+        String range = exchange.getRequestHeaders().getFirst("x-amz-copy-source-range");
+        if (range != null) {
+            String[] bytes = range.substring("bytes=".length()).split("-");
+            start = Long.parseLong(bytes[0]);
+            end = Long.parseLong(bytes[1]);
+        }
+        try (FileChannel in = FileChannel.open(source.file, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            transfer(in, start, end - start + 1, out);
+        }
+        return new S3Object(file);
+    }
+
+    /**
+     * 按分片号顺序合并
+     */
+    private S3Object merge(ConcurrentSkipListMap<Integer, S3Object> partMap, List<String> partNumberList) throws IOException {
+        Path file = dataDir.resolve(IdUtil.simpleUUID());
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (String partNumber : partNumberList) {
+                S3Object part = partMap.get(Integer.valueOf(partNumber));
+                try (FileChannel in = FileChannel.open(part.file, StandardOpenOption.READ)) {
+                    transfer(in, 0, part.size, out);
+                }
+            }
+        }
+        partMap.values().forEach(this::delete);
+        return new S3Object(file);
+    }
+
+    private void send(HttpExchange exchange, S3Object object, boolean head) throws IOException {
+        long start = 0;
+        long length = object.size;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bytes = range.substring("bytes=".length()).split("-", -1);
+            start = Long.parseLong(bytes[0]);
+            long end = bytes[1].isEmpty() ? object.size - 1 : Math.min(Long.parseLong(bytes[1]), object.size - 1);
+            length = Math.max(end - start + 1, 0);
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.size);
+        }
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+        exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified));
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.size));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        if (length == 0) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(object.file, StandardOpenOption.READ);
+             OutputStream outputStream = exchange.getResponseBody()) {
+            transfer(in, start, length, Channels.newChannel(outputStream));
+        }
+    }
+
+    private void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] bytes = (XML_HEADER + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long count, WritableByteChannel out) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private void remove(String objectKey) {
+        delete(objectMap.remove(objectKey));
+    }
+
+    private void delete(S3Object object) {
+        if (object != null) {
+            FileUtil.del(object.file.toFile());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int index = pair.indexOf('=');
+            String name = URLUtil.decode(index < 0 ? pair : pair.substring(0, index));
+            query.put(name, index < 0 ? "" : URLUtil.decode(pair.substring(index + 1)));
+        }
+        return query;
+    }
+
+    private static final class S3Object {
+
+        private final Path file;
+
+        private final long size;
+
+        private final String etag;
+
+        private final ZonedDateTime lastModified = ZonedDateTime.now(ZoneOffset.UTC);
+
+        private S3Object(Path file) throws IOException {
+            this(file, IdUtil.simpleUUID());
+        }
+
+        private S3Object(Path file, String etag) throws IOException {
+            this.file = file;
+            this.size = Files.size(file);
+            this.etag = etag;
+        }
+    }
+
+}
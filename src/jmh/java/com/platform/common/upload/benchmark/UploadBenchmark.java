@@ -0,0 +1,82 @@
+package com.platform.common.upload.benchmark;
+
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.vo.UploadFileVo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件上传（并发数通过 -t 指定）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"local", "minio"})
+    private String uploadType;
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    private long fileSize;
+
+    private BenchmarkBackend backend;
+
+    private UploadService uploadService;
+
+    private File file;
+
+    /**
+     * 本轮上传的文件，每轮结束后删除
+     */
+    private final Queue<String> fileKeyQueue = new ConcurrentLinkedQueue<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        backend = new BenchmarkBackend(uploadType);
+        uploadService = backend.getUploadService();
+        file = backend.createFile(fileSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clean() {
+        List<String> fileKeys = new ArrayList<>(fileKeyQueue);
+        fileKeyQueue.clear();
+        if (!fileKeys.isEmpty()) {
+            uploadService.delFiles(fileKeys);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Benchmark
+    public UploadFileVo uploadFile() {
+        UploadFileVo fileVo = uploadService.uploadFile(file);
+        fileKeyQueue.add(fileVo.getFileKey());
+        return fileVo;
+    }
+
+}
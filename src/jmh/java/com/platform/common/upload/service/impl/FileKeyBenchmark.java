@@ -0,0 +1,67 @@
+package com.platform.common.upload.service.impl;
+
+import com.platform.common.upload.key.FileKeyStrategy;
+import com.platform.common.upload.key.ShardedFileKeyStrategy;
+import com.platform.common.upload.key.TimeBucketFileKeyStrategy;
+import com.platform.common.upload.vo.UploadFileVo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件名生成（与UploadBaseService同包，直接调用受保护的静态方法）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileKeyBenchmark {
+
+    private static final String PREFIX = "alpaca";
+
+    private static final String FILE_NAME = "头像-20240101.jpeg";
+
+    private static final String FILE_KEY = "alpaca/202401/01/08/65a1b2c3d4e5f6a7b8c9d0e1";
+
+    private static final String SERVER_URL = "https://cdn.example.com";
+
+    private final FileKeyStrategy timeBucketStrategy = new TimeBucketFileKeyStrategy();
+
+    private final FileKeyStrategy shardedStrategy = new ShardedFileKeyStrategy(2);
+
+    @Benchmark
+    public String getFileKey() {
+        return timeBucketStrategy.getFileKey(PREFIX, UploadBaseService.getFileName());
+    }
+
+    @Benchmark
+    public String getFileKeyWithName() {
+        return timeBucketStrategy.getFileKey(PREFIX, FILE_NAME);
+    }
+
+    @Benchmark
+    public String getShardedFileKey() {
+        return shardedStrategy.getFileKey(PREFIX, FILE_NAME);
+    }
+
+    @Benchmark
+    public String appendFileExtension() {
+        return UploadBaseService.appendFileExtension(FILE_NAME, FILE_KEY);
+    }
+
+    @Benchmark
+    public UploadFileVo format() {
+        return UploadBaseService.format(FILE_NAME, SERVER_URL, FILE_KEY);
+    }
+
+}
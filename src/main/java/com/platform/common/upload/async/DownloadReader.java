@@ -0,0 +1,142 @@
+package com.platform.common.upload.async;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按需读取的下载（对应响应式的 Flux&lt;DataBuffer&gt;），不阻塞读取线程
+ * <p>
+ * 每次read在线程池中读取一块，调用方处理完上一块再读取下一块，未请求时不会预读，读到末尾时返回null；
+ * 返回的DataBuffer由调用方释放，不再读取时调用close
+ */
+public class DownloadReader {
+
+    private final Callable<InputStream> opener;
+
+    private final DataBufferFactory bufferFactory;
+
+    private final int chunkSize;
+
+    private final Executor executor;
+
+    private InputStream inputStream;
+
+    /**
+     * 正在读取
+     */
+    private boolean reading;
+
+    private boolean closed;
+
+    public DownloadReader(Callable<InputStream> opener, DataBufferFactory bufferFactory, int chunkSize
+            , Executor executor) {
+        this.opener = opener;
+        this.bufferFactory = bufferFactory;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    /**
+     * 读取下一块，读到末尾时返回null
+     */
+    public synchronized CompletableFuture<DataBuffer> read() {
+        CompletableFuture<DataBuffer> future = new CompletableFuture<>();
+        if (closed || reading) {
+            future.completeExceptionally(new IllegalStateException(closed ? "下载已关闭" : "上一块尚未读取完成"));
+            return future;
+        }
+        reading = true;
+        try {
+            executor.execute(() -> readChunk(future));
+        } catch (RejectedExecutionException e) {
+            reading = false;
+            future.completeExceptionally(new RuntimeException("下载队列已满"));
+        }
+        return future;
+    }
+
+    /**
+     * 关闭文件流，正在读取时同样关闭，阻塞中的读取随即结束，返回null
+     */
+    public synchronized void close() {
+        closeStream();
+    }
+
+    private void readChunk(CompletableFuture<DataBuffer> future) {
+        byte[] bytes = new byte[chunkSize];
+        int count = 0;
+        try {
+            InputStream stream = open();
+            while (stream != null && count < chunkSize) {
+                int read = stream.read(bytes, count, chunkSize - count);
+                if (read == -1) {
+                    break;
+                }
+                count += read;
+            }
+        } catch (Exception e) {
+            // 读取期间已关闭时按结束处理
+            if (finish(true)) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(e);
+            }
+            return;
+        }
+        // 读取期间已关闭或读到末尾
+        if (finish(count == 0)) {
+            future.complete(null);
+            return;
+        }
+        future.complete(bufferFactory.wrap(ByteBuffer.wrap(bytes, 0, count)));
+    }
+
+    /**
+     * 打开文件流（只打开一次），已关闭时返回null
+     */
+    private InputStream open() throws Exception {
+        synchronized (this) {
+            if (closed || inputStream != null) {
+                return inputStream;
+            }
+        }
+        InputStream stream = opener.call();
+        synchronized (this) {
+            if (!closed) {
+                inputStream = stream;
+                return stream;
+            }
+        }
+        // 打开期间已关闭
+        IOUtils.closeQuietly(stream);
+        return null;
+    }
+
+    /**
+     * 读取结束，读到末尾时关闭文件流
+     *
+     * @return 是否已结束（读到末尾或读取期间已关闭）
+     */
+    private synchronized boolean finish(boolean end) {
+        reading = false;
+        if (end) {
+            closeStream();
+        }
+        return closed;
+    }
+
+    private void closeStream() {
+        closed = true;
+        IOUtils.closeQuietly(inputStream);
+        inputStream = null;
+    }
+
+}
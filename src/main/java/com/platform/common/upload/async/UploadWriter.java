@@ -0,0 +1,239 @@
+package com.platform.common.upload.async;
+
+import com.platform.common.upload.vo.UploadFileVo;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 分块写入的上传（对应响应式的 Flux&lt;DataBuffer&gt;），不阻塞写入线程
+ * <p>
+ * 已写入的分块放入有界队列，由上传线程读取写入存储；队列满时write返回的future在上传线程取走分块后才完成，
+ * 写入方等待future完成后再写下一块（如 content.concatMap(buffer -&gt; Mono.fromFuture(writer.write(buffer)))）
+ * <p>
+ * 队列写满、写入结束或出错后才开始上传，写入方发送数据期间不占用上传线程；小文件写入结束后一次上传
+ * <p>
+ * 写入的DataBuffer由上传方释放
+ */
+public class UploadWriter {
+
+    /**
+     * 队列中最多的分块数
+     */
+    private final int capacity;
+
+    private final Deque<DataBuffer> queue = new ArrayDeque<>();
+
+    /**
+     * 队列已满时等待放入的分块
+     */
+    private DataBuffer pending;
+
+    private CompletableFuture<Void> pendingFuture;
+
+    /**
+     * 上传线程正在读取的分块
+     */
+    private DataBuffer current;
+
+    private boolean completed;
+
+    private Throwable error;
+
+    /**
+     * 上传已结束（完成、失败或取消），之后写入的分块直接释放
+     */
+    private boolean closed;
+
+    private final CompletableFuture<UploadFileVo> result = new CompletableFuture<>();
+
+    /**
+     * 有数据可上传（队列已满、写入结束或出错）时完成，之后才开始上传，上传线程不会空等写入方
+     */
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    private final InputStream inputStream = new InputStream() {
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return UploadWriter.this.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() {
+            UploadWriter.this.close(new IOException("上传已结束"));
+        }
+    };
+
+    public UploadWriter(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    /**
+     * 写入分块，返回的future完成后才能写入下一块
+     */
+    public CompletableFuture<Void> write(DataBuffer buffer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean full;
+        synchronized (this) {
+            if (completed || pending != null) {
+                release(buffer);
+                future.completeExceptionally(new IllegalStateException(completed ? "上传已完成写入" : "上一个分块尚未写入"));
+                return future;
+            }
+            if (closed) {
+                release(buffer);
+                future.completeExceptionally(new IOException("上传已结束"));
+                return future;
+            }
+            if (queue.size() < capacity) {
+                queue.add(buffer);
+                notifyAll();
+                future.complete(null);
+            } else {
+                pending = buffer;
+                pendingFuture = future;
+            }
+            full = queue.size() >= capacity;
+        }
+        if (full) {
+            ready.complete(null);
+        }
+        return future;
+    }
+
+    /**
+     * 写入结束，返回上传结果
+     */
+    public CompletableFuture<UploadFileVo> complete() {
+        synchronized (this) {
+            completed = true;
+            notifyAll();
+        }
+        ready.complete(null);
+        return result;
+    }
+
+    /**
+     * 写入方出错（如客户端断开），上传失败
+     */
+    public CompletableFuture<UploadFileVo> error(Throwable throwable) {
+        synchronized (this) {
+            if (error == null) {
+                error = throwable;
+            }
+            notifyAll();
+        }
+        ready.complete(null);
+        return result;
+    }
+
+    /**
+     * 上传结果
+     */
+    public CompletableFuture<UploadFileVo> getResult() {
+        return result;
+    }
+
+    /**
+     * 有数据可上传时完成
+     */
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    /**
+     * 上传线程读取的输入流
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * 上传结束，释放未读取的分块，等待中的写入失败
+     */
+    public void close(Throwable throwable) {
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(current);
+            current = null;
+            queue.forEach(UploadWriter::release);
+            queue.clear();
+            release(pending);
+            pending = null;
+            future = pendingFuture;
+            pendingFuture = null;
+            notifyAll();
+        }
+        if (future != null) {
+            future.completeExceptionally(throwable);
+        }
+        ready.complete(null);
+    }
+
+    private int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        CompletableFuture<Void> future = null;
+        int count;
+        synchronized (this) {
+            while (current == null || current.readableByteCount() == 0) {
+                if (closed) {
+                    throw new IOException("上传已结束");
+                }
+                if (error != null) {
+                    throw new IOException("写入失败", error);
+                }
+                release(current);
+                current = queue.poll();
+                if (pending != null) {
+                    queue.add(pending);
+                    pending = null;
+                    future = pendingFuture;
+                    pendingFuture = null;
+                }
+                if (current == null) {
+                    if (completed) {
+                        return -1;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("上传已中断", e);
+                    }
+                }
+            }
+            count = Math.min(length, current.readableByteCount());
+            current.read(buffer, offset, count);
+        }
+        // 在锁外完成，写入方的回调不占用锁
+        if (future != null) {
+            future.complete(null);
+        }
+        return count;
+    }
+
+    private static void release(DataBuffer buffer) {
+        if (buffer instanceof PooledDataBuffer) {
+            ((PooledDataBuffer) buffer).release();
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.platform.common.upload.cache;
+
+import com.platform.common.upload.decorator.UploadServiceDecorator;
+import com.platform.common.upload.service.UploadService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 文件读缓存
+ */
+@Component
+@ConditionalOnProperty(prefix = "upload.cache", name = "enabled", havingValue = "true")
+public class CacheUploadDecorator implements UploadServiceDecorator {
+
+    private final ReadThroughCache readThroughCache;
+
+    public CacheUploadDecorator(ReadThroughCache readThroughCache) {
+        this.readThroughCache = readThroughCache;
+    }
+
+    @Override
+    public UploadService decorate(UploadService uploadService) {
+        return new CachedUploadService(uploadService, readThroughCache);
+    }
+
+    @Override
+    public int getOrder() {
+        return 50;
+    }
+
+}
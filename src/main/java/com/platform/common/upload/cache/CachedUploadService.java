@@ -0,0 +1,104 @@
+package com.platform.common.upload.cache;
+
+import cn.hutool.core.io.file.FileNameUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.platform.common.upload.decorator.DelegatingUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.vo.DeleteFileVo;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带读缓存的上传服务
+ */
+public class CachedUploadService extends DelegatingUploadService {
+
+    private final ReadThroughCache readThroughCache;
+
+    /**
+     * 按地址缓存的文件（地址最后一段 -> 地址），各存储的地址格式不同，删除时按地址以fileKey结尾匹配
+     */
+    private final Cache<String, Set<String>> urlCache = Caffeine.newBuilder()
+            .maximumSize(100000)
+            .build();
+
+    public CachedUploadService(UploadService delegate, ReadThroughCache readThroughCache) {
+        super(delegate);
+        this.readThroughCache = readThroughCache;
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        urlCache.get(getLastName(getPath(urlPath)), key -> ConcurrentHashMap.newKeySet()).add(urlPath);
+        return readThroughCache.get(getUrlKey(urlPath), 0, -1, () -> delegate.getInputStream(urlPath));
+    }
+
+    /**
+     * 整个文件读取时回源并缓存，范围读取只使用已有缓存
+     */
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        String key = getFileKey(fileKey);
+        if (offset == 0 && length < 0) {
+            return readThroughCache.get(key, 0, -1, () -> delegate.getInputStream(fileKey, 0, -1));
+        }
+        InputStream inputStream = readThroughCache.getIfCached(key, offset, length);
+        return inputStream != null ? inputStream : delegate.getInputStream(fileKey, offset, length);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        List<DeleteFileVo> dataList = delegate.delFiles(fileKeys);
+        fileKeys.forEach(this::invalidate);
+        return dataList;
+    }
+
+    /**
+     * 移除按fileKey和按地址（含带处理参数的地址）缓存的内容
+     */
+    private void invalidate(String fileKey) {
+        readThroughCache.invalidate(getFileKey(fileKey));
+        Set<String> urlSet = urlCache.getIfPresent(getLastName(fileKey));
+        if (urlSet == null) {
+            return;
+        }
+        String suffix = FileNameUtil.UNIX_SEPARATOR + fileKey;
+        urlSet.removeIf(urlPath -> {
+            if (!getPath(urlPath).endsWith(suffix)) {
+                return false;
+            }
+            readThroughCache.invalidate(getUrlKey(urlPath));
+            return true;
+        });
+    }
+
+    /**
+     * 去掉地址中的参数
+     */
+    private static String getPath(String urlPath) {
+        int index = urlPath.indexOf('?');
+        return index == -1 ? urlPath : urlPath.substring(0, index);
+    }
+
+    private static String getLastName(String path) {
+        return path.substring(path.lastIndexOf(FileNameUtil.UNIX_SEPARATOR) + 1);
+    }
+
+    private String getUrlKey(String urlPath) {
+        return getUploadType().getCode() + ":url:" + urlPath;
+    }
+
+    private String getFileKey(String fileKey) {
+        return getUploadType().getCode() + ":key:" + fileKey;
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.platform.common.upload.cache;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 文件读缓存
+ * 小文件放在内存，其余落地本地磁盘，均按容量淘汰（W-TinyLFU），同一文件的并发未命中只回源一次
+ * 超过单个文件上限的文件不缓存，回源时读到上限后直接返回给调用方，之后的读取直接回源
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "upload.cache", name = "enabled", havingValue = "true")
+public class ReadThroughCache {
+
+    /**
+     * 磁盘缓存目录
+     */
+    @Value("${upload.cache.dir:${java.io.tmpdir}/upload-cache}")
+    private String cacheDir;
+    /**
+     * 磁盘缓存容量（字节）
+     */
+    @Value("${upload.cache.maxDiskSize:1073741824}")
+    private long maxDiskSize;
+    /**
+     * 内存缓存容量（字节），0表示不使用内存缓存
+     */
+    @Value("${upload.cache.maxHeapSize:67108864}")
+    private long maxHeapSize;
+    /**
+     * 放入内存缓存的单个文件上限（字节）
+     */
+    @Value("${upload.cache.heapObjectSize:65536}")
+    private long heapObjectSize;
+    /**
+     * 缓存的单个文件上限（字节），超过时不缓存
+     */
+    @Value("${upload.cache.maxObjectSize:67108864}")
+    private long maxObjectSize;
+    /**
+     * 过期时间（分钟）
+     */
+    @Value("${upload.cache.expire:1440}")
+    private long expire;
+
+    private Cache<String, byte[]> heapCache;
+
+    private Cache<String, File> diskCache;
+
+    /**
+     * 超过上限的文件，直接回源
+     */
+    private Cache<String, Boolean> oversizeCache;
+
+    /**
+     * 回源中的文件
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loadingMap = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder coalesceCount = new LongAdder();
+
+    private final LongAdder oversizeCount = new LongAdder();
+
+    /**
+     * 回源结果：文件超过上限，由各调用方分别回源
+     */
+    private static final Object OVERSIZE = new Object();
+
+    @PostConstruct
+    public void init() {
+        File dir = FileUtil.mkdir(cacheDir);
+        // 重启后旧文件无法纳入容量统计，直接清空
+        FileUtil.clean(dir);
+        this.heapCache = Caffeine.newBuilder()
+                .recordStats()
+                .maximumWeight(maxHeapSize)
+                .<String, byte[]>weigher((key, value) -> value.length)
+                .expireAfterWrite(expire, TimeUnit.MINUTES)
+                .build();
+        this.diskCache = Caffeine.newBuilder()
+                .recordStats()
+                .maximumWeight(maxDiskSize)
+                .<String, File>weigher((key, value) -> (int) Math.min(Integer.MAX_VALUE, value.length()))
+                .expireAfterWrite(expire, TimeUnit.MINUTES)
+                .removalListener((String key, File value, RemovalCause cause) -> {
+                    // 已打开的读取不受影响
+                    if (value != null) {
+                        FileUtil.del(value);
+                    }
+                })
+                .build();
+        this.oversizeCache = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(expire, TimeUnit.MINUTES)
+                .build();
+        this.maxObjectSize = Math.min(maxObjectSize, maxDiskSize);
+    }
+
+    /**
+     * 读取缓存，未命中时回源
+     *
+     * @param length 读取长度，小于0表示读取到末尾
+     */
+    public InputStream get(String key, long offset, long length, Supplier<InputStream> loader) {
+        Object value = getIfPresent(key);
+        if (value != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+            value = oversizeCache.getIfPresent(key) != null ? OVERSIZE : load(key, loader);
+        }
+        if (value instanceof InputStream) {
+            return slice((InputStream) value, offset, length);
+        }
+        if (value == OVERSIZE) {
+            oversizeCount.increment();
+            return slice(loader.get(), offset, length);
+        }
+        try {
+            return open(value, offset, length);
+        } catch (IOException e) {
+            // 文件已被淘汰，直接回源
+            log.warn("缓存文件已失效：" + key);
+            invalidate(key);
+            return slice(loader.get(), offset, length);
+        }
+    }
+
+    /**
+     * 只读取已缓存的内容，未命中返回null
+     */
+    public InputStream getIfCached(String key, long offset, long length) {
+        Object value = getIfPresent(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            InputStream inputStream = open(value, offset, length);
+            hitCount.increment();
+            return inputStream;
+        } catch (IOException e) {
+            invalidate(key);
+            return null;
+        }
+    }
+
+    /**
+     * 移除缓存
+     */
+    public void invalidate(String key) {
+        heapCache.invalidate(key);
+        diskCache.invalidate(key);
+        oversizeCache.invalidate(key);
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 并发未命中合并到同一次回源的次数
+     */
+    public long getCoalesceCount() {
+        return coalesceCount.sum();
+    }
+
+    /**
+     * 超过单个文件上限直接回源的次数
+     */
+    public long getOversizeCount() {
+        return oversizeCount.sum();
+    }
+
+    /**
+     * 内存缓存的文件数
+     */
+    public long getHeapCount() {
+        return heapCache.estimatedSize();
+    }
+
+    /**
+     * 内存缓存淘汰次数
+     */
+    public long getHeapEvictionCount() {
+        return heapCache.stats().evictionCount();
+    }
+
+    /**
+     * 磁盘缓存的文件数
+     */
+    public long getDiskCount() {
+        return diskCache.estimatedSize();
+    }
+
+    /**
+     * 磁盘缓存淘汰次数
+     */
+    public long getDiskEvictionCount() {
+        return diskCache.stats().evictionCount();
+    }
+
+    private Object getIfPresent(String key) {
+        byte[] data = heapCache.getIfPresent(key);
+        if (data != null) {
+            return data;
+        }
+        return diskCache.getIfPresent(key);
+    }
+
+    /**
+     * 回源，同一文件并发未命中时等待同一次回源结果
+     *
+     * @return 缓存内容；超过上限时回源的调用方得到文件流，等待的调用方得到OVERSIZE
+     */
+    private Object load(String key, Supplier<InputStream> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadingMap.putIfAbsent(key, future);
+        if (loading != null) {
+            coalesceCount.increment();
+            try {
+                return loading.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            Object value = fetch(key, loader);
+            future.complete(value instanceof InputStream ? OVERSIZE : value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(key, future);
+        }
+    }
+
+    /**
+     * 最多读取上限的字节数落地，超过上限时返回已读取部分加上剩余的源文件流
+     */
+    private Object fetch(String key, Supplier<InputStream> loader) {
+        // 每次回源使用新文件名，避免异步淘汰误删新文件
+        File file = new File(cacheDir, IdUtil.fastSimpleUUID());
+        InputStream inputStream = loader.get();
+        boolean oversize = false;
+        try {
+            long count;
+            try (OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+                count = IOUtils.copyLarge(inputStream, outputStream, 0, maxObjectSize + 1);
+            }
+            if (count > maxObjectSize) {
+                oversize = true;
+                oversizeCache.put(key, Boolean.TRUE);
+                InputStream head = new FileInputStream(file) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        FileUtil.del(file);
+                    }
+                };
+                return new SequenceInputStream(head, inputStream);
+            }
+            if (maxHeapSize > 0 && file.length() <= heapObjectSize) {
+                byte[] data = Files.readAllBytes(file.toPath());
+                FileUtil.del(file);
+                heapCache.put(key, data);
+                return data;
+            }
+            diskCache.put(key, file);
+            return file;
+        } catch (IOException e) {
+            FileUtil.del(file);
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        } finally {
+            if (!oversize) {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+    }
+
+    private static InputStream open(Object value, long offset, long length) throws IOException {
+        if (value instanceof byte[]) {
+            byte[] data = (byte[]) value;
+            int start = (int) Math.min(offset, data.length);
+            int count = length >= 0 ? (int) Math.min(length, data.length - start) : data.length - start;
+            return new ByteArrayInputStream(data, start, count);
+        }
+        FileChannel channel = FileChannel.open(((File) value).toPath(), StandardOpenOption.READ);
+        channel.position(offset);
+        InputStream inputStream = Channels.newInputStream(channel);
+        return length >= 0 ? new BoundedInputStream(inputStream, length) : inputStream;
+    }
+
+    private static InputStream slice(InputStream inputStream, long offset, long length) {
+        try {
+            IOUtils.skipFully(inputStream, offset);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            throw new RuntimeException("获取文件流失败");
+        }
+        return length >= 0 ? new BoundedInputStream(inputStream, length) : inputStream;
+    }
+
+}
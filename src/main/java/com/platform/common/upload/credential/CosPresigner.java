@@ -0,0 +1,81 @@
+package com.platform.common.upload.credential;
+
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.crypto.SecureUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 腾讯云预签名URL（本地计算，不依赖sdk客户端）
+ * <p>
+ * SignKey只与KeyTime相关，按时间窗口缓存，每个文件只需再做一次sha1和hmac
+ */
+public class CosPresigner {
+
+    private final String accessKey;
+
+    private final byte[] secretKey;
+
+    /**
+     * 存储桶访问地址，如 https://bucket.cos.ap-guangzhou.myqcloud.com
+     */
+    private final String endpoint;
+
+    /**
+     * 有效期（毫秒）
+     */
+    private final long expireMillis;
+
+    /**
+     * 复用时长（毫秒）
+     */
+    private final long reuseMillis;
+
+    /**
+     * KeyTime和SignKey
+     */
+    private final TimeWindowCache<String[]> signKeyCache;
+
+    /**
+     * @param expire 有效期（分钟），签出的链接至少保留该有效期
+     * @param reuse  复用时长（分钟），同一时段内的请求共用一份SignKey
+     */
+    public CosPresigner(String accessKey, String secretKey, String bucket, String region, long expire, long reuse) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey.getBytes(CharsetUtil.CHARSET_UTF_8);
+        this.endpoint = "https://" + bucket + ".cos." + region + ".myqcloud.com";
+        this.expireMillis = TimeUnit.MINUTES.toMillis(expire);
+        this.reuseMillis = TimeUnit.MINUTES.toMillis(reuse);
+        this.signKeyCache = new TimeWindowCache<>(reuseMillis, this::signKey);
+    }
+
+    /**
+     * 生成PUT上传的预签名URL
+     */
+    public String presignPut(String fileKey) {
+        String[] signKey = signKeyCache.get();
+        String keyTime = signKey[0];
+        String path = "/" + fileKey;
+        // HttpString：method\npath\nparams\nheaders\n，不签参数和请求头
+        String httpString = "put\n" + path + "\n\n\n";
+        String stringToSign = "sha1\n" + keyTime + "\n" + SecureUtil.sha1(httpString) + "\n";
+        String signature = SecureUtil.hmacSha1(signKey[1].getBytes(CharsetUtil.CHARSET_UTF_8)).digestHex(stringToSign);
+        return endpoint + URLUtil.encode(path)
+                + "?q-sign-algorithm=sha1"
+                + "&q-ak=" + URLUtil.encodeAll(accessKey)
+                + "&q-sign-time=" + URLUtil.encodeAll(keyTime)
+                + "&q-key-time=" + URLUtil.encodeAll(keyTime)
+                + "&q-header-list="
+                + "&q-url-param-list="
+                + "&q-signature=" + signature;
+    }
+
+    private String[] signKey(long windowStart) {
+        long start = TimeUnit.MILLISECONDS.toSeconds(windowStart);
+        long end = TimeUnit.MILLISECONDS.toSeconds(windowStart + reuseMillis + expireMillis);
+        String keyTime = start + ";" + end;
+        String signKey = SecureUtil.hmacSha1(secretKey).digestHex(keyTime);
+        return new String[]{keyTime, signKey};
+    }
+}
@@ -0,0 +1,66 @@
+package com.platform.common.upload.credential;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.crypto.SecureUtil;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阿里云表单上传签名（本地计算，不依赖sdk客户端）
+ */
+public class OssPostSigner {
+
+    /**
+     * 上传文件大小上限
+     */
+    private static final long MAX_CONTENT_LENGTH = 1048576000L;
+
+    private final byte[] secretKey;
+
+    /**
+     * 有效期（毫秒）
+     */
+    private final long expireMillis;
+
+    /**
+     * 复用时长（毫秒）
+     */
+    private final long reuseMillis;
+
+    private final TimeWindowCache<PostPolicy> policyCache;
+
+    /**
+     * @param expire 有效期（分钟），签出的策略至少保留该有效期
+     * @param reuse  复用时长（分钟），同一时段内的请求共用一份策略
+     */
+    public OssPostSigner(String secretKey, long expire, long reuse) {
+        this.secretKey = secretKey.getBytes(CharsetUtil.CHARSET_UTF_8);
+        this.expireMillis = TimeUnit.MINUTES.toMillis(expire);
+        this.reuseMillis = TimeUnit.MINUTES.toMillis(reuse);
+        this.policyCache = new TimeWindowCache<>(reuseMillis, this::sign);
+    }
+
+    /**
+     * 获取当前策略
+     */
+    public PostPolicy getPolicy() {
+        return policyCache.get();
+    }
+
+    private PostPolicy sign(long windowStart) {
+        // 过期时间取窗口结束时间加有效期，窗口内任意时刻取到的策略剩余有效期都不少于expire
+        long expiration = windowStart + reuseMillis + expireMillis;
+        String json = "{\"expiration\":\"" + DateUtil.format(new Date(expiration), DatePattern.UTC_MS_FORMAT)
+                + "\",\"conditions\":[[\"content-length-range\",0," + MAX_CONTENT_LENGTH + "]]}";
+        String policy = Base64.encode(json, CharsetUtil.CHARSET_UTF_8);
+        String signature = Base64.encode(SecureUtil.hmacSha1(secretKey).digest(policy));
+        return new PostPolicy()
+                .setPolicy(policy)
+                .setSignature(signature)
+                .setExpiration(expiration);
+    }
+}
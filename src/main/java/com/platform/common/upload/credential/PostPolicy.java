@@ -0,0 +1,27 @@
+package com.platform.common.upload.credential;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 表单上传策略
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+public class PostPolicy {
+
+    /**
+     * 策略（Base64）
+     */
+    private String policy;
+
+    /**
+     * 签名
+     */
+    private String signature;
+
+    /**
+     * 过期时间（毫秒）
+     */
+    private Long expiration;
+}
@@ -0,0 +1,59 @@
+package com.platform.common.upload.credential;
+
+import java.util.function.LongFunction;
+
+/**
+ * 按时间窗口复用的签名结果
+ * <p>
+ * 窗口按整点对齐，同一窗口内的请求共用一次签名，多节点签出的结果也一致
+ */
+public class TimeWindowCache<T> {
+
+    /**
+     * 窗口长度（毫秒）
+     */
+    private final long windowMillis;
+
+    /**
+     * 签名函数，入参为窗口起始时间（毫秒）
+     */
+    private final LongFunction<T> signer;
+
+    private volatile Entry<T> current;
+
+    public TimeWindowCache(long windowMillis, LongFunction<T> signer) {
+        this.windowMillis = Math.max(windowMillis, 1000L);
+        this.signer = signer;
+    }
+
+    /**
+     * 获取当前窗口的签名结果
+     */
+    public T get() {
+        long now = System.currentTimeMillis();
+        long windowStart = now - now % windowMillis;
+        Entry<T> entry = current;
+        if (entry == null || entry.windowStart != windowStart) {
+            synchronized (this) {
+                entry = current;
+                if (entry == null || entry.windowStart != windowStart) {
+                    entry = new Entry<>(windowStart, signer.apply(windowStart));
+                    current = entry;
+                }
+            }
+        }
+        return entry.value;
+    }
+
+    private static final class Entry<T> {
+
+        private final long windowStart;
+
+        private final T value;
+
+        private Entry(long windowStart, T value) {
+            this.windowStart = windowStart;
+            this.value = value;
+        }
+    }
+}
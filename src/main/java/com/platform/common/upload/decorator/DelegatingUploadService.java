@@ -0,0 +1,113 @@
+package com.platform.common.upload.decorator;
+
+import cn.hutool.core.lang.Dict;
+import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 委托上传服务，装饰器按需覆盖方法
+ */
+public abstract class DelegatingUploadService implements UploadService {
+
+    protected final UploadService delegate;
+
+    protected DelegatingUploadService(UploadService delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 获取被包装的上传服务
+     */
+    public UploadService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return delegate.getUploadType();
+    }
+
+    @Override
+    public String getServerUrl() {
+        return delegate.getServerUrl();
+    }
+
+    @Override
+    public Dict getFileToken() {
+        return delegate.getFileToken();
+    }
+
+    @Override
+    public List<Dict> getFileTokens(int count) {
+        return delegate.getFileTokens(count);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return delegate.uploadFile(file);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return delegate.uploadFile(file);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        return delegate.uploadFile(source);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        return delegate.uploadFile(file, uploadId);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        return delegate.uploadFile(file, uploadId);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        return delegate.uploadFiles(fileList);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        return delegate.uploadMultipartFiles(fileList);
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        return delegate.getInputStream(urlPath);
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        return delegate.getInputStream(fileKey, offset, length);
+    }
+
+    @Override
+    public boolean delFile(File file) {
+        return delegate.delFile(file);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delegate.delFile(dataList);
+    }
+
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return delegate.delFiles(fileKeys);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.platform.common.upload.decorator;
+
+import com.platform.common.upload.service.UploadService;
+import org.springframework.core.Ordered;
+
+/**
+ * 上传服务装饰器，按order从小到大依次包装（order越小越靠近实际存储）
+ */
+public interface UploadServiceDecorator extends Ordered {
+
+    /**
+     * 包装上传服务
+     */
+    UploadService decorate(UploadService uploadService);
+
+    /**
+     * 副本模式下是否装饰各个存储（默认装饰副本服务）
+     */
+    default boolean isPerBackend() {
+        return false;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.platform.common.upload.decorator;
+
+import com.platform.common.upload.replica.ReplicatingUploadService;
+import com.platform.common.upload.route.RoutingUploadService;
+import com.platform.common.upload.service.UploadService;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 为上传服务依次套上已启用的装饰器
+ */
+@Component
+public class UploadServiceDecoratorPostProcessor implements BeanPostProcessor, BeanFactoryAware, EnvironmentAware {
+
+    private ConfigurableListableBeanFactory beanFactory;
+
+    private Environment environment;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        // 路由本身不装饰，装饰在各个存储上
+        if (!(bean instanceof UploadService) || bean instanceof DelegatingUploadService
+                || bean instanceof RoutingUploadService) {
+            return bean;
+        }
+        // 副本模式下装饰在副本服务上，各存储收到的是只能读取一次的分发文件，只套上按存储生效的装饰器
+        boolean replica = environment.getProperty("upload.replica.enabled", Boolean.class, false);
+        boolean backend = !(bean instanceof ReplicatingUploadService);
+        List<UploadServiceDecorator> decoratorList = beanFactory.getBeanProvider(UploadServiceDecorator.class)
+                .orderedStream()
+                .filter(decorator -> !replica || decorator.isPerBackend() == backend)
+                .collect(Collectors.toList());
+        UploadService uploadService = (UploadService) bean;
+        for (UploadServiceDecorator decorator : decoratorList) {
+            uploadService = decorator.decorate(uploadService);
+        }
+        return uploadService;
+    }
+
+}
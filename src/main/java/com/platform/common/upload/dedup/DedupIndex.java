@@ -0,0 +1,32 @@
+package com.platform.common.upload.dedup;
+
+import com.platform.common.upload.vo.UploadFileVo;
+
+/**
+ * 去重索引（内容摘要 -> 已上传文件）
+ */
+public interface DedupIndex {
+
+    /**
+     * 查询已上传文件，不存在返回null
+     */
+    UploadFileVo get(String hash);
+
+    /**
+     * 命中已上传文件并增加引用数，不存在返回null
+     */
+    UploadFileVo acquire(String hash);
+
+    /**
+     * 记录已上传文件，引用数为1
+     */
+    void put(String hash, UploadFileVo fileVo);
+
+    /**
+     * 减少引用数，减到0时移除索引
+     *
+     * @return 剩余引用数，为0时需要删除文件（未记录的文件同样返回0）
+     */
+    int release(String fileKey);
+
+}
@@ -0,0 +1,60 @@
+package com.platform.common.upload.dedup;
+
+import com.platform.common.upload.decorator.UploadServiceDecorator;
+import com.platform.common.upload.service.UploadService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 内容去重，可自定义DedupIndex替换默认的本地索引（默认的本地索引只支持单节点部署）
+ */
+@Component
+@ConditionalOnProperty(prefix = "upload.dedup", name = "enabled", havingValue = "true")
+public class DedupUploadDecorator implements UploadServiceDecorator {
+
+    /**
+     * 索引目录
+     */
+    @Value("${upload.dedup.indexDir:${java.io.tmpdir}/upload-dedup}")
+    private String indexDir;
+    /**
+     * 内存缓存条数
+     */
+    @Value("${upload.dedup.cacheSize:10000}")
+    private int cacheSize;
+    /**
+     * 是否多节点部署，多节点时必须自定义共享的DedupIndex（本地索引的引用数只在单节点内一致）
+     */
+    @Value("${upload.dedup.cluster:false}")
+    private boolean cluster;
+
+    private final ObjectProvider<DedupIndex> dedupIndexProvider;
+
+    private DedupIndex dedupIndex;
+
+    public DedupUploadDecorator(ObjectProvider<DedupIndex> dedupIndexProvider) {
+        this.dedupIndexProvider = dedupIndexProvider;
+    }
+
+    @Override
+    public synchronized UploadService decorate(UploadService uploadService) {
+        if (dedupIndex == null) {
+            dedupIndex = dedupIndexProvider.getIfAvailable();
+        }
+        if (dedupIndex == null) {
+            if (cluster) {
+                throw new RuntimeException("多节点部署时需注册共享的DedupIndex：upload.dedup.cluster");
+            }
+            dedupIndex = new LocalDedupIndex(indexDir, cacheSize);
+        }
+        return new DedupUploadService(uploadService, dedupIndex);
+    }
+
+    @Override
+    public int getOrder() {
+        return 100;
+    }
+
+}
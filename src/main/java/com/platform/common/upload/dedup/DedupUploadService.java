@@ -0,0 +1,183 @@
+package com.platform.common.upload.dedup;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.platform.common.upload.decorator.DelegatingUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 内容去重上传
+ * 上传前计算文件摘要，命中索引时直接返回已上传的文件，不再传输
+ */
+@Slf4j
+public class DedupUploadService extends DelegatingUploadService {
+
+    private final DedupIndex dedupIndex;
+
+    public DedupUploadService(UploadService delegate, DedupIndex dedupIndex) {
+        super(delegate);
+        this.dedupIndex = dedupIndex;
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return upload(file, this::hash, MultipartFile::getOriginalFilename, delegate::uploadFile);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return upload(file, this::hash, File::getName, delegate::uploadFile);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        return batchUpload(fileList, this::hash, File::getName, delegate::uploadFiles);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        return batchUpload(fileList, this::hash, MultipartFile::getOriginalFilename, delegate::uploadMultipartFiles);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    /**
+     * 相同内容的上传共用同一个文件，只减少引用数，最后一个引用删除时才删除文件
+     */
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        DeleteFileVo[] dataList = new DeleteFileVo[fileKeys.size()];
+        List<String> deleteList = new ArrayList<>();
+        List<Integer> deleteIndex = new ArrayList<>();
+        for (int i = 0; i < fileKeys.size(); i++) {
+            String fileKey = fileKeys.get(i);
+            if (dedupIndex.release(fileKey) > 0) {
+                dataList[i] = new DeleteFileVo().setFileKey(fileKey).setSuccess(true);
+            } else {
+                deleteList.add(fileKey);
+                deleteIndex.add(i);
+            }
+        }
+        if (!deleteList.isEmpty()) {
+            List<DeleteFileVo> resultList = delegate.delFiles(deleteList);
+            for (int i = 0; i < resultList.size(); i++) {
+                dataList[deleteIndex.get(i)] = resultList.get(i);
+            }
+        }
+        return Arrays.asList(dataList);
+    }
+
+    /**
+     * 单个上传
+     */
+    private <T> UploadFileVo upload(T file, Function<T, String> hasher, Function<T, String> fileNameGetter
+            , Function<T, UploadFileVo> uploader) {
+        String hash = hasher.apply(file);
+        UploadFileVo fileVo = find(hash, fileNameGetter.apply(file));
+        if (fileVo != null) {
+            return fileVo;
+        }
+        fileVo = uploader.apply(file);
+        if (hash != null) {
+            dedupIndex.put(hash, fileVo);
+        }
+        return fileVo;
+    }
+
+    /**
+     * 批量上传，只传输未命中的文件
+     */
+    private <T> List<UploadFileVo> batchUpload(List<T> fileList, Function<T, String> hasher
+            , Function<T, String> fileNameGetter, Function<List<T>, List<UploadFileVo>> uploader) {
+        UploadFileVo[] dataList = new UploadFileVo[fileList.size()];
+        String[] hashList = new String[fileList.size()];
+        List<T> missList = new ArrayList<>();
+        List<Integer> missIndex = new ArrayList<>();
+        for (int i = 0; i < fileList.size(); i++) {
+            T file = fileList.get(i);
+            hashList[i] = hasher.apply(file);
+            UploadFileVo fileVo = find(hashList[i], fileNameGetter.apply(file));
+            if (fileVo != null) {
+                dataList[i] = fileVo.setSuccess(true);
+            } else {
+                missList.add(file);
+                missIndex.add(i);
+            }
+        }
+        if (!missList.isEmpty()) {
+            List<UploadFileVo> uploadList = uploader.apply(missList);
+            for (int i = 0; i < uploadList.size(); i++) {
+                int index = missIndex.get(i);
+                UploadFileVo fileVo = uploadList.get(i);
+                dataList[index] = fileVo;
+                if (hashList[index] != null && Boolean.TRUE.equals(fileVo.getSuccess())) {
+                    dedupIndex.put(hashList[index], fileVo);
+                }
+            }
+        }
+        List<UploadFileVo> resultList = new ArrayList<>(dataList.length);
+        for (UploadFileVo fileVo : dataList) {
+            resultList.add(fileVo);
+        }
+        return resultList;
+    }
+
+    /**
+     * 查询索引，命中时增加引用数并使用本次的文件名称
+     */
+    private UploadFileVo find(String hash, String fileName) {
+        if (hash == null) {
+            return null;
+        }
+        UploadFileVo fileVo = dedupIndex.acquire(hash);
+        if (fileVo == null) {
+            return null;
+        }
+        UploadFileVo result = BeanUtil.copyProperties(fileVo, UploadFileVo.class);
+        if (fileName != null && !fileName.isEmpty()) {
+            result.setFileName(fileName);
+        }
+        return result;
+    }
+
+    private String hash(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return hash(inputStream, file.getSize());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private String hash(File file) {
+        try (InputStream inputStream = FileUtil.getInputStream(file)) {
+            return hash(inputStream, file.length());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 摘要按存储类型隔离，并带上文件大小
+     */
+    private String hash(InputStream inputStream, long fileSize) {
+        return getUploadType().getCode() + ":" + fileSize + ":" + DigestUtil.sha256Hex(inputStream);
+    }
+
+}
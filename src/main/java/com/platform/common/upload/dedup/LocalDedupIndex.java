@@ -0,0 +1,153 @@
+package com.platform.common.upload.dedup;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 本地去重索引，只支持单节点部署（引用数在本节点内加锁更新），多节点部署时需自定义共享的DedupIndex
+ * 内存LRU缓存热点摘要，全量索引按摘要前两位分目录存放在本地磁盘
+ * 文件的引用数记录在fileKey对应的文件中（摘要+换行+引用数）
+ */
+@Slf4j
+public class LocalDedupIndex implements DedupIndex {
+
+    private static final String KEY_DIR = "keys";
+
+    private final File indexDir;
+
+    private final LRUCache<String, UploadFileVo> cache;
+
+    public LocalDedupIndex(String indexDir, int cacheSize) {
+        this.indexDir = FileUtil.mkdir(indexDir);
+        this.cache = CacheUtil.newLRUCache(cacheSize);
+    }
+
+    @Override
+    public UploadFileVo get(String hash) {
+        UploadFileVo fileVo = cache.get(hash, false);
+        if (fileVo != null) {
+            return fileVo;
+        }
+        File file = getHashFile(hash);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            fileVo = JSONUtil.toBean(FileUtil.readUtf8String(file), UploadFileVo.class);
+            cache.put(hash, fileVo);
+            return fileVo;
+        } catch (Exception e) {
+            log.error("去重索引读取失败：" + hash, e);
+            return null;
+        }
+    }
+
+    /**
+     * 引用数写入失败时视为未命中，由调用方重新上传
+     */
+    @Override
+    public synchronized UploadFileVo acquire(String hash) {
+        UploadFileVo fileVo = get(hash);
+        if (fileVo == null) {
+            return null;
+        }
+        File keyFile = getKeyFile(fileVo.getFileKey());
+        try {
+            write(keyFile, hash + "\n" + (readCount(keyFile) + 1));
+            return fileVo;
+        } catch (Exception e) {
+            log.error("去重索引写入失败：" + hash, e);
+            return null;
+        }
+    }
+
+    /**
+     * 相同内容并发上传时保留已记录的文件，本次的文件单独计数，删除时不影响已记录的文件
+     */
+    @Override
+    public synchronized void put(String hash, UploadFileVo fileVo) {
+        try {
+            write(getKeyFile(fileVo.getFileKey()), hash + "\n" + 1);
+            UploadFileVo current = get(hash);
+            if (current == null || !getKeyFile(current.getFileKey()).exists()) {
+                write(getHashFile(hash), JSONUtil.toJsonStr(fileVo));
+                cache.put(hash, fileVo);
+            }
+        } catch (Exception e) {
+            log.error("去重索引写入失败：" + hash, e);
+        }
+    }
+
+    /**
+     * 引用数减到0时先移除索引再删除文件，删除期间的上传不会再命中该文件；
+     * 摘要已指向其他文件（并发上传的相同内容）时只移除本文件的引用数
+     */
+    @Override
+    public synchronized int release(String fileKey) {
+        File keyFile = getKeyFile(fileKey);
+        if (!keyFile.exists()) {
+            return 0;
+        }
+        String[] values = FileUtil.readUtf8String(keyFile).split("\n");
+        int count = readCount(keyFile) - 1;
+        if (count > 0) {
+            try {
+                write(keyFile, values[0] + "\n" + count);
+                return count;
+            } catch (Exception e) {
+                // 引用数未减少，保留文件
+                log.error("去重索引写入失败：" + fileKey, e);
+                return count + 1;
+            }
+        }
+        UploadFileVo current = get(values[0]);
+        if (current == null || fileKey.equals(current.getFileKey())) {
+            cache.remove(values[0]);
+            FileUtil.del(getHashFile(values[0]));
+        }
+        FileUtil.del(keyFile);
+        return 0;
+    }
+
+    /**
+     * 读取引用数，旧索引没有引用数时为1
+     */
+    private static int readCount(File keyFile) {
+        if (!keyFile.exists()) {
+            return 0;
+        }
+        String[] values = FileUtil.readUtf8String(keyFile).split("\n");
+        return values.length > 1 ? Integer.parseInt(values[1].trim()) : 1;
+    }
+
+    private File getHashFile(String hash) {
+        String name = SecureUtil.md5(hash);
+        return new File(indexDir, name.substring(0, 2) + File.separator + name);
+    }
+
+    private File getKeyFile(String fileKey) {
+        return new File(indexDir, KEY_DIR + File.separator + SecureUtil.md5(fileKey));
+    }
+
+    /**
+     * 先写临时文件再替换
+     */
+    private static void write(File file, String content) throws Exception {
+        FileUtil.mkParentDirs(file);
+        File temp = new File(file.getPath() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+        Files.write(temp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.platform.common.upload.delete;
+
+import cn.hutool.core.io.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 待删除文件日志（本地磁盘），每行一个文件，重启后继续删除
+ */
+@Slf4j
+public class DeleteJournal implements Closeable {
+
+    private final File file;
+
+    private BufferedWriter writer;
+
+    public DeleteJournal(File file) {
+        this.file = file;
+        FileUtil.mkParentDirs(file);
+    }
+
+    /**
+     * 读取待删除文件
+     */
+    public synchronized Set<String> load() {
+        Set<String> keySet = new LinkedHashSet<>();
+        if (file.exists()) {
+            for (String line : FileUtil.readUtf8Lines(file)) {
+                if (!line.isEmpty()) {
+                    keySet.add(line);
+                }
+            }
+        }
+        return keySet;
+    }
+
+    /**
+     * 追加待删除文件
+     */
+    public synchronized void append(Collection<String> fileKeys) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8
+                    , StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        for (String fileKey : fileKeys) {
+            writer.write(fileKey);
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    /**
+     * 按剩余的待删除文件重写日志（先写临时文件再替换）
+     */
+    public synchronized void rewrite(Collection<String> fileKeys) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            close();
+            Files.write(temp.toPath(), fileKeys, StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.error("删除日志重写失败：" + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.platform.common.upload.delete;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.platform.common.upload.decorator.UploadServiceDecorator;
+import com.platform.common.upload.service.UploadService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步删除，删除请求写入本地日志后立即返回，后台定时或积满一批时合并删除
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "upload.deleteQueue", name = "enabled", havingValue = "true")
+public class DeleteQueueDecorator implements UploadServiceDecorator {
+
+    /**
+     * 停止时等待后台删除完成的时间（秒）
+     */
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    /**
+     * 日志目录
+     */
+    @Value("${upload.deleteQueue.journalDir:${java.io.tmpdir}/upload-delete}")
+    private String journalDir;
+    /**
+     * 每批删除数量，积满后立即删除
+     */
+    @Value("${upload.deleteQueue.batchSize:1000}")
+    private int batchSize;
+    /**
+     * 删除间隔（毫秒）
+     */
+    @Value("${upload.deleteQueue.flushInterval:1000}")
+    private long flushInterval;
+    /**
+     * 失败重试次数
+     */
+    @Value("${upload.deleteQueue.maxRetries:3}")
+    private int maxRetries;
+
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1
+            , new NamedThreadFactory("upload-delete-", true));
+
+    private final List<DeleteQueueUploadService> serviceList = new CopyOnWriteArrayList<>();
+
+    @Override
+    public UploadService decorate(UploadService uploadService) {
+        File file = new File(journalDir, uploadService.getUploadType().getCode() + ".log");
+        DeleteQueueUploadService deleteQueueService = new DeleteQueueUploadService(uploadService
+                , new DeleteJournal(file), executor, batchSize, maxRetries);
+        executor.scheduleWithFixedDelay(deleteQueueService::triggerFlush, flushInterval, flushInterval
+                , TimeUnit.MILLISECONDS);
+        serviceList.add(deleteQueueService);
+        return deleteQueueService;
+    }
+
+    /**
+     * 停止前尽量删完，未删除的文件保留在日志中，下次启动继续
+     */
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (DeleteQueueUploadService deleteQueueService : serviceList) {
+            try {
+                deleteQueueService.flush();
+                deleteQueueService.close();
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return 60;
+    }
+
+}
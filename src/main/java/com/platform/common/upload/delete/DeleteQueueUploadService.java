@@ -0,0 +1,207 @@
+package com.platform.common.upload.delete;
+
+import com.platform.common.upload.decorator.DelegatingUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.vo.DeleteFileVo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 异步删除：删除请求先写日志入队立即返回，后台按批合并删除
+ */
+@Slf4j
+public class DeleteQueueUploadService extends DelegatingUploadService {
+
+    private final DeleteJournal deleteJournal;
+
+    private final Executor executor;
+
+    /**
+     * 每批删除数量
+     */
+    private final int batchSize;
+
+    /**
+     * 失败重试次数
+     */
+    private final int maxRetries;
+
+    /**
+     * 待删除文件（去重，保持入队顺序）
+     */
+    private final Set<String> pendingSet = new LinkedHashSet<>();
+
+    /**
+     * 删除失败，下个周期重试的文件
+     */
+    private final Set<String> retrySet = new LinkedHashSet<>();
+
+    /**
+     * 失败次数
+     */
+    private final Map<String, Integer> retryMap = new HashMap<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    public DeleteQueueUploadService(UploadService delegate, DeleteJournal deleteJournal, Executor executor
+            , int batchSize, int maxRetries) {
+        super(delegate);
+        this.deleteJournal = deleteJournal;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        // 上次未完成的删除
+        pendingSet.addAll(deleteJournal.load());
+        if (!pendingSet.isEmpty()) {
+            log.info("待删除文件{}个，继续删除", pendingSet.size());
+        }
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    /**
+     * 入队即返回成功，实际删除在后台执行
+     */
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        boolean full;
+        synchronized (this) {
+            try {
+                deleteJournal.append(fileKeys);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException("文件删除失败");
+            }
+            pendingSet.addAll(fileKeys);
+            full = pendingSet.size() >= batchSize;
+        }
+        if (full) {
+            triggerFlush();
+        }
+        return fileKeys.stream()
+                .map(fileKey -> new DeleteFileVo().setFileKey(fileKey).setSuccess(true))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 待删除数量
+     */
+    public synchronized int getPendingCount() {
+        return pendingSet.size() + retrySet.size();
+    }
+
+    /**
+     * 后台删除
+     */
+    void triggerFlush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    flushing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 停止中，留在日志中下次启动删除
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 按批删除全部待删除文件
+     */
+    void flush() {
+        synchronized (this) {
+            pendingSet.addAll(retrySet);
+            retrySet.clear();
+        }
+        boolean flushed = false;
+        while (true) {
+            List<String> batchList = poll();
+            if (batchList.isEmpty()) {
+                break;
+            }
+            flushed = true;
+            List<DeleteFileVo> resultList;
+            try {
+                resultList = delegate.delFiles(batchList);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                resultList = batchList.stream()
+                        .map(fileKey -> new DeleteFileVo().setFileKey(fileKey).setSuccess(false).setErrorMsg(e.getMessage()))
+                        .collect(Collectors.toList());
+            }
+            complete(resultList);
+        }
+        if (!flushed) {
+            return;
+        }
+        // 删除是幂等的，中途重启时重复删除已完成的文件无影响，每轮结束后再重写日志
+        synchronized (this) {
+            List<String> remainList = new ArrayList<>(pendingSet.size() + retrySet.size());
+            remainList.addAll(pendingSet);
+            remainList.addAll(retrySet);
+            deleteJournal.rewrite(remainList);
+        }
+    }
+
+    /**
+     * 关闭日志
+     */
+    void close() throws IOException {
+        deleteJournal.close();
+    }
+
+    /**
+     * 取出一批待删除文件
+     */
+    private synchronized List<String> poll() {
+        List<String> batchList = new ArrayList<>(Math.min(batchSize, pendingSet.size()));
+        Iterator<String> iterator = pendingSet.iterator();
+        while (iterator.hasNext() && batchList.size() < batchSize) {
+            batchList.add(iterator.next());
+            iterator.remove();
+        }
+        return batchList;
+    }
+
+    /**
+     * 失败的文件下个周期重试，超过重试次数后放弃
+     */
+    private synchronized void complete(List<DeleteFileVo> resultList) {
+        for (DeleteFileVo result : resultList) {
+            String fileKey = result.getFileKey();
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                retryMap.remove(fileKey);
+                continue;
+            }
+            int retries = retryMap.merge(fileKey, 1, Integer::sum);
+            if (retries > maxRetries) {
+                retryMap.remove(fileKey);
+                log.error("文件删除失败，已放弃：{}，{}", fileKey, result.getErrorMsg());
+                continue;
+            }
+            retrySet.add(fileKey);
+        }
+    }
+
+}
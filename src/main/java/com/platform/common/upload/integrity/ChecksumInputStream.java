@@ -0,0 +1,179 @@
+package com.platform.common.upload.integrity;
+
+import cn.hutool.core.util.HexUtil;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 边读边计算MD5、SHA-256、CRC64（可选七牛qetag），不额外读取文件
+ * <p>
+ * 支持mark/reset（SDK重试时回退），跳过的字节同样计入校验值
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private State state;
+
+    /**
+     * mark时的状态
+     */
+    private State markState;
+
+    public ChecksumInputStream(InputStream in) {
+        this(in, false);
+    }
+
+    /**
+     * @param qetag 是否计算七牛qetag
+     */
+    public ChecksumInputStream(InputStream in, boolean qetag) {
+        super(in);
+        this.state = new State(qetag);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            state.update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = in.read(buffer, offset, length);
+        if (count > 0) {
+            state.update(buffer, offset, count);
+        }
+        return count;
+    }
+
+    /**
+     * 读取跳过的内容以计入校验值
+     */
+    @Override
+    public long skip(long length) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(length, 0), 8192)];
+        long skipped = 0;
+        while (skipped < length) {
+            int count = read(buffer, 0, (int) Math.min(buffer.length, length - skipped));
+            if (count == -1) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        in.mark(readLimit);
+        markState = state.copy();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        in.reset();
+        if (markState != null) {
+            state = markState.copy();
+        }
+    }
+
+    /**
+     * 已读取的字节数
+     */
+    public long getCount() {
+        return state.count;
+    }
+
+    /**
+     * MD5（16进制小写）
+     */
+    public String getMd5() {
+        return HexUtil.encodeHexStr(copyOf(state.md5).digest());
+    }
+
+    /**
+     * SHA-256（16进制小写）
+     */
+    public String getSha256() {
+        return HexUtil.encodeHexStr(copyOf(state.sha256).digest());
+    }
+
+    /**
+     * CRC64（无符号十进制）
+     */
+    public String getCrc64() {
+        return state.crc64.getValueString();
+    }
+
+    /**
+     * 七牛qetag，未计算时返回null
+     */
+    public String getQetag() {
+        return state.qetag == null ? null : state.qetag.getValue();
+    }
+
+    private static MessageDigest copyOf(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 校验状态
+     */
+    private static class State {
+
+        private MessageDigest md5;
+
+        private MessageDigest sha256;
+
+        private Crc64 crc64;
+
+        private Qetag qetag;
+
+        private long count;
+
+        private State(boolean qetag) {
+            try {
+                this.md5 = MessageDigest.getInstance("MD5");
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            this.crc64 = new Crc64();
+            this.qetag = qetag ? new Qetag() : null;
+        }
+
+        private State() {
+        }
+
+        private void update(byte[] buffer, int offset, int length) {
+            md5.update(buffer, offset, length);
+            sha256.update(buffer, offset, length);
+            crc64.update(buffer, offset, length);
+            if (qetag != null) {
+                qetag.update(buffer, offset, length);
+            }
+            count += length;
+        }
+
+        private State copy() {
+            State copy = new State();
+            copy.md5 = copyOf(md5);
+            copy.sha256 = copyOf(sha256);
+            copy.crc64 = crc64.copy();
+            copy.qetag = qetag == null ? null : qetag.copy();
+            copy.count = count;
+            return copy;
+        }
+    }
+
+}
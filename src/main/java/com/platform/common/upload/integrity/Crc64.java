@@ -0,0 +1,49 @@
+package com.platform.common.upload.integrity;
+
+/**
+ * CRC64（ECMA-182，与oss/cos返回的crc64ecma一致）
+ */
+public class Crc64 {
+
+    private static final long POLY = 0xC96C5795D7870F42L;
+
+    private static final long[] TABLE = new long[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            long crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private long crc = -1L;
+
+    public void update(byte[] buffer, int offset, int length) {
+        long value = crc;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            value = TABLE[(int) ((value ^ buffer[i]) & 0xFF)] ^ (value >>> 8);
+        }
+        crc = value;
+    }
+
+    public long getValue() {
+        return ~crc;
+    }
+
+    /**
+     * 无符号十进制字符串（oss/cos返回的格式）
+     */
+    public String getValueString() {
+        return Long.toUnsignedString(getValue());
+    }
+
+    public Crc64 copy() {
+        Crc64 copy = new Crc64();
+        copy.crc = crc;
+        return copy;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.platform.common.upload.integrity;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 七牛文件hash（qetag）：按4MB分块计算SHA1，单块为 0x16+SHA1，多块为 0x96+SHA1(各块SHA1)，URL安全Base64
+ */
+public class Qetag {
+
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private MessageDigest blockDigest;
+
+    /**
+     * 当前块已读取的字节数
+     */
+    private int blockCount;
+
+    /**
+     * 已完成各块的SHA1
+     */
+    private ByteArrayOutputStream blockHashes = new ByteArrayOutputStream();
+
+    public Qetag() {
+        try {
+            this.blockDigest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        while (length > 0) {
+            int count = Math.min(length, BLOCK_SIZE - blockCount);
+            blockDigest.update(buffer, offset, count);
+            blockCount += count;
+            offset += count;
+            length -= count;
+            if (blockCount == BLOCK_SIZE) {
+                blockHashes.write(blockDigest.digest(), 0, 20);
+                blockCount = 0;
+            }
+        }
+    }
+
+    public String getValue() {
+        byte[] hashes = blockHashes.toByteArray();
+        byte[] result = new byte[21];
+        if (hashes.length == 0 || (hashes.length == 20 && blockCount == 0)) {
+            // 单块（含空文件）
+            byte[] hash = hashes.length == 0 ? clone(blockDigest).digest() : hashes;
+            result[0] = 0x16;
+            System.arraycopy(hash, 0, result, 1, 20);
+        } else {
+            MessageDigest digest = clone(blockDigest);
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            all.write(hashes, 0, hashes.length);
+            if (blockCount > 0) {
+                all.write(digest.digest(), 0, 20);
+            }
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-1").digest(all.toByteArray());
+                result[0] = (byte) 0x96;
+                System.arraycopy(hash, 0, result, 1, 20);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return Base64.getUrlEncoder().encodeToString(result);
+    }
+
+    public Qetag copy() {
+        Qetag copy = new Qetag();
+        copy.blockDigest = clone(blockDigest);
+        copy.blockCount = blockCount;
+        copy.blockHashes = new ByteArrayOutputStream();
+        byte[] hashes = blockHashes.toByteArray();
+        copy.blockHashes.write(hashes, 0, hashes.length);
+        return copy;
+    }
+
+    private static MessageDigest clone(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
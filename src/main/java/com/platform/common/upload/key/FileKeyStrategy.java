@@ -0,0 +1,16 @@
+package com.platform.common.upload.key;
+
+/**
+ * 文件名（对象key）生成策略
+ */
+public interface FileKeyStrategy {
+
+    /**
+     * 生成文件全名
+     *
+     * @param prefix   前缀，为空时不拼接
+     * @param fileName 文件名
+     */
+    String getFileKey(String prefix, String fileName);
+
+}
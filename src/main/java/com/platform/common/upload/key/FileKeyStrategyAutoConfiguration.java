@@ -0,0 +1,36 @@
+package com.platform.common.upload.key;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 内置的文件名生成策略，按 upload.key.strategy 选择；使用方自定义 FileKeyStrategy 时不生效
+ * <p>
+ * 通过 spring.factories 在使用方的bean之后注册（不参与组件扫描），@ConditionalOnMissingBean 才能看到自定义的策略
+ */
+@Configuration
+public class FileKeyStrategyAutoConfiguration {
+
+    /**
+     * 哈希分片（shard）
+     */
+    @Bean
+    @ConditionalOnMissingBean(FileKeyStrategy.class)
+    @ConditionalOnProperty(prefix = "upload.key", name = "strategy", havingValue = "shard")
+    public FileKeyStrategy shardedFileKeyStrategy(@Value("${upload.key.shardLength:2}") int shardLength) {
+        return new ShardedFileKeyStrategy(shardLength);
+    }
+
+    /**
+     * 按小时分目录（time，默认）
+     */
+    @Bean
+    @ConditionalOnMissingBean(FileKeyStrategy.class)
+    public FileKeyStrategy timeBucketFileKeyStrategy() {
+        return new TimeBucketFileKeyStrategy();
+    }
+
+}
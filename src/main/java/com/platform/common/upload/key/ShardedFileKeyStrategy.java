@@ -0,0 +1,47 @@
+package com.platform.common.upload.key;
+
+/**
+ * 前缀后插入哈希分片：prefix/ab/yyyyMM/dd/HH/fileName
+ * <p>
+ * 同一小时的写入分散到多个key区间，避免oss/cos按前缀分区时的写入热点
+ */
+public class ShardedFileKeyStrategy extends TimeBucketFileKeyStrategy {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 最大分片长度（32位哈希）
+     */
+    private static final int MAX_SHARD_LENGTH = 8;
+
+    /**
+     * 分片长度（16进制位数，2位即256个分片）
+     */
+    private final int shardLength;
+
+    public ShardedFileKeyStrategy(int shardLength) {
+        this.shardLength = Math.min(Math.max(shardLength, 1), MAX_SHARD_LENGTH);
+    }
+
+    @Override
+    protected void appendShard(StringBuilder builder, String fileName) {
+        int hash = mix(fileName.hashCode());
+        for (int i = 0; i < shardLength; i++) {
+            builder.append(HEX[(hash >>> (28 - i * 4)) & 0xF]);
+        }
+        builder.append('/');
+    }
+
+    /**
+     * 打散哈希（murmur3 fmix32），相近的文件名也能均匀分布
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
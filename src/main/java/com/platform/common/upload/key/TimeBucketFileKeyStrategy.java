@@ -0,0 +1,75 @@
+package com.platform.common.upload.key;
+
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 按小时分目录：prefix/yyyyMM/dd/HH/fileName（默认）
+ * <p>
+ * 目录部分按小时缓存，跨小时后才重新计算
+ */
+public class TimeBucketFileKeyStrategy implements FileKeyStrategy {
+
+    private static final ZoneId ZONE_ID = ZoneId.of("Asia/Shanghai");
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMM/dd/HH/");
+
+    private volatile Bucket bucket;
+
+    @Override
+    public String getFileKey(String prefix, String fileName) {
+        String path = getBucketPath();
+        StringBuilder builder = new StringBuilder(length(prefix) + path.length() + fileName.length() + 4);
+        if (!StringUtils.isEmpty(prefix)) {
+            builder.append(prefix).append('/');
+        }
+        appendShard(builder, fileName);
+        return builder.append(path).append(fileName).toString();
+    }
+
+    /**
+     * 目录前插入的内容，默认不插入
+     */
+    protected void appendShard(StringBuilder builder, String fileName) {
+    }
+
+    /**
+     * 当前小时的目录（yyyyMM/dd/HH/）
+     */
+    protected String getBucketPath() {
+        long now = System.currentTimeMillis();
+        Bucket current = bucket;
+        if (current == null || now >= current.expireAt || now < current.startAt) {
+            ZonedDateTime hour = Instant.ofEpochMilli(now).atZone(ZONE_ID).truncatedTo(ChronoUnit.HOURS);
+            long startAt = hour.toInstant().toEpochMilli();
+            current = new Bucket(startAt, hour.plusHours(1).toInstant().toEpochMilli(), FORMATTER.format(hour));
+            bucket = current;
+        }
+        return current.path;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static final class Bucket {
+
+        private final long startAt;
+
+        private final long expireAt;
+
+        private final String path;
+
+        private Bucket(long startAt, long expireAt, String path) {
+            this.startAt = startAt;
+            this.expireAt = expireAt;
+            this.path = path;
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.platform.common.upload.metrics;
+
+import com.platform.common.upload.cache.ReadThroughCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 文件读缓存监控指标
+ * <p>
+ * upload.cache.gets：读取次数，按结果区分（hit、miss、coalesce、oversize）
+ * upload.cache.evictions：淘汰次数，按层级区分（heap、disk）
+ * upload.cache.size：缓存的文件数，按层级区分
+ */
+@Component
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnProperty(prefix = "upload.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CacheMetrics {
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private final ObjectProvider<ReadThroughCache> readThroughCacheProvider;
+
+    public CacheMetrics(ObjectProvider<MeterRegistry> meterRegistryProvider
+            , ObjectProvider<ReadThroughCache> readThroughCacheProvider) {
+        this.meterRegistryProvider = meterRegistryProvider;
+        this.readThroughCacheProvider = readThroughCacheProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        ReadThroughCache cache = readThroughCacheProvider.getIfAvailable();
+        // 没有指标注册中心或未启用缓存时不做处理
+        if (meterRegistry == null || cache == null) {
+            return;
+        }
+        registerCounter(meterRegistry, cache, "upload.cache.gets", "读取次数", "result", "hit", ReadThroughCache::getHitCount);
+        registerCounter(meterRegistry, cache, "upload.cache.gets", "读取次数", "result", "miss", ReadThroughCache::getMissCount);
+        registerCounter(meterRegistry, cache, "upload.cache.gets", "读取次数", "result", "coalesce", ReadThroughCache::getCoalesceCount);
+        registerCounter(meterRegistry, cache, "upload.cache.gets", "读取次数", "result", "oversize", ReadThroughCache::getOversizeCount);
+        registerCounter(meterRegistry, cache, "upload.cache.evictions", "淘汰次数", "tier", "heap", ReadThroughCache::getHeapEvictionCount);
+        registerCounter(meterRegistry, cache, "upload.cache.evictions", "淘汰次数", "tier", "disk", ReadThroughCache::getDiskEvictionCount);
+        Gauge.builder("upload.cache.size", cache, ReadThroughCache::getHeapCount)
+                .description("缓存的文件数")
+                .tag("tier", "heap")
+                .register(meterRegistry);
+        Gauge.builder("upload.cache.size", cache, ReadThroughCache::getDiskCount)
+                .description("缓存的文件数")
+                .tag("tier", "disk")
+                .register(meterRegistry);
+    }
+
+    private static void registerCounter(MeterRegistry meterRegistry, ReadThroughCache cache, String name
+            , String description, String tagKey, String tagValue, ToDoubleFunction<ReadThroughCache> function) {
+        FunctionCounter.builder(name, cache, function)
+                .description(description)
+                .tag(tagKey, tagValue)
+                .register(meterRegistry);
+    }
+
+}
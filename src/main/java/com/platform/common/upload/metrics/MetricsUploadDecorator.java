@@ -0,0 +1,40 @@
+package com.platform.common.upload.metrics;
+
+import com.platform.common.upload.decorator.UploadServiceDecorator;
+import com.platform.common.upload.service.UploadService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 监控指标，使用方引入actuator后通过 /actuator/metrics 查看
+ */
+@Component
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnProperty(prefix = "upload.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsUploadDecorator implements UploadServiceDecorator {
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    public MetricsUploadDecorator(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @Override
+    public UploadService decorate(UploadService uploadService) {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        // 没有指标注册中心时不做处理
+        if (meterRegistry == null) {
+            return uploadService;
+        }
+        return new MetricsUploadService(uploadService, meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        return 20;
+    }
+
+}
@@ -0,0 +1,274 @@
+package com.platform.common.upload.metrics;
+
+import cn.hutool.core.lang.Dict;
+import com.platform.common.upload.decorator.DelegatingUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.io.input.CountingInputStream;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 上传服务监控指标
+ * <p>
+ * upload.requests：耗时（p50/p95/p99），按方法、结果、文件大小区间区分；
+ * 批量调用按各文件的结果区分：全部成功为success，部分失败为partial，全部失败为error
+ * upload.bytes：上传/下载字节数
+ * upload.throughput：单次上传速度（MB/s）
+ * upload.inflight：执行中的请求数
+ */
+public class MetricsUploadService extends DelegatingUploadService {
+
+    private static final long MB = 1024 * 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 存储类型
+     */
+    private final String type;
+
+    /**
+     * 执行中的请求数
+     */
+    private final Map<String, AtomicInteger> inflightMap = new ConcurrentHashMap<>();
+
+    public MetricsUploadService(UploadService delegate, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.meterRegistry = meterRegistry;
+        this.type = delegate.getUploadType().getCode();
+    }
+
+    @Override
+    public Dict getFileToken() {
+        return record("getFileToken", -1, delegate::getFileToken);
+    }
+
+    @Override
+    public List<Dict> getFileTokens(int count) {
+        return record("getFileToken", -1, () -> delegate.getFileTokens(count));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return record("uploadFile", file.getSize(), () -> delegate.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return record("uploadFile", file.length(), () -> delegate.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        return record("uploadFile", source.getLength(), () -> delegate.uploadFile(source));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        return record("uploadFile", file.getSize(), () -> delegate.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        return record("uploadFile", file.length(), () -> delegate.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        return recordBatch(fileList, File::length, () -> delegate.uploadFiles(fileList));
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        return recordBatch(fileList, MultipartFile::getSize, () -> delegate.uploadMultipartFiles(fileList));
+    }
+
+    /**
+     * 耗时统计到拿到文件流为止，字节数在流关闭时统计
+     */
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        return countBytes(record("getInputStream", -1, () -> delegate.getInputStream(urlPath)));
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        return countBytes(record("getInputStream", length, () -> delegate.getInputStream(fileKey, offset, length)));
+    }
+
+    /**
+     * 返回false（未全部删除）时结果为error
+     */
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return record("delFile", -1, () -> delegate.delFile(dataList), result -> result ? "success" : "error");
+    }
+
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return record("delFile", -1, () -> delegate.delFiles(fileKeys)
+                , resultList -> getOutcome(resultList, DeleteFileVo::getSuccess));
+    }
+
+    /**
+     * 批量上传，按各文件的结果区分；部分失败时只统计成功文件的字节数
+     */
+    private <T> List<UploadFileVo> recordBatch(List<T> fileList, ToLongFunction<T> sizeGetter
+            , Supplier<List<UploadFileVo>> action) {
+        long size = fileList.stream().mapToLong(sizeGetter).sum();
+        List<UploadFileVo> resultList = record("uploadFiles", size, action
+                , dataList -> getOutcome(dataList, UploadFileVo::getSuccess));
+        if ("partial".equals(getOutcome(resultList, UploadFileVo::getSuccess))) {
+            long successSize = 0;
+            for (int i = 0; i < resultList.size() && i < fileList.size(); i++) {
+                if (resultList.get(i) != null && Boolean.TRUE.equals(resultList.get(i).getSuccess())) {
+                    successSize += sizeGetter.applyAsLong(fileList.get(i));
+                }
+            }
+            recordBytes("upload", successSize);
+        }
+        return resultList;
+    }
+
+    /**
+     * 批量结果：全部成功为success，部分失败为partial，全部失败为error
+     */
+    private static <T> String getOutcome(List<T> resultList, Function<T, Boolean> successGetter) {
+        long failed = resultList.stream()
+                .filter(item -> item == null || !Boolean.TRUE.equals(successGetter.apply(item)))
+                .count();
+        if (failed == 0) {
+            return "success";
+        }
+        return failed < resultList.size() ? "partial" : "error";
+    }
+
+    private <T> T record(String method, long size, Supplier<T> action) {
+        return record(method, size, action, result -> "success");
+    }
+
+    /**
+     * 记录耗时、结果和执行中的请求数，抛出异常时结果为error
+     *
+     * @param size          文件大小，小于0表示未知
+     * @param outcomeGetter 按返回值判断结果
+     */
+    private <T> T record(String method, long size, Supplier<T> action, Function<T, String> outcomeGetter) {
+        AtomicInteger inflight = getInflight(method);
+        inflight.incrementAndGet();
+        long startTime = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = action.get();
+            outcome = outcomeGetter.apply(result);
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - startTime;
+            inflight.decrementAndGet();
+            Timer.builder("upload.requests")
+                    .description("上传服务请求耗时")
+                    .tag("type", type)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .tag("size", getSizeBucket(size))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            if (size > 0 && "success".equals(outcome) && !"getInputStream".equals(method)) {
+                recordBytes("upload", size);
+                double seconds = (double) Math.max(elapsed, 1) / TimeUnit.SECONDS.toNanos(1);
+                DistributionSummary.builder("upload.throughput")
+                        .description("上传速度")
+                        .baseUnit("MB/s")
+                        .tag("type", type)
+                        .tag("size", getSizeBucket(size))
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry)
+                        .record((double) size / MB / seconds);
+            }
+        }
+    }
+
+    private void recordBytes(String direction, long bytes) {
+        Counter.builder("upload.bytes")
+                .description("传输字节数")
+                .baseUnit("bytes")
+                .tag("type", type)
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * 下载流关闭时统计读取的字节数
+     */
+    private InputStream countBytes(InputStream inputStream) {
+        return new CountingInputStream(inputStream) {
+
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        recordBytes("download", getByteCount());
+                    }
+                }
+            }
+        };
+    }
+
+    private AtomicInteger getInflight(String method) {
+        return inflightMap.computeIfAbsent(method, key -> {
+            AtomicInteger inflight = new AtomicInteger();
+            Gauge.builder("upload.inflight", inflight, AtomicInteger::get)
+                    .description("执行中的请求数")
+                    .tag("type", type)
+                    .tag("method", key)
+                    .register(meterRegistry);
+            return inflight;
+        });
+    }
+
+    /**
+     * 文件大小区间
+     */
+    private static String getSizeBucket(long size) {
+        if (size < 0) {
+            return "unknown";
+        }
+        if (size < MB) {
+            return "<1MB";
+        }
+        if (size < 10 * MB) {
+            return "1-10MB";
+        }
+        if (size < 100 * MB) {
+            return "10-100MB";
+        }
+        return ">=100MB";
+    }
+
+}
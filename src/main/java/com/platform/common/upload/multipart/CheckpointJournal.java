@@ -0,0 +1,96 @@
+package com.platform.common.upload.multipart;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 断点续传日志（本地磁盘）
+ */
+@Slf4j
+@Component
+public class CheckpointJournal {
+
+    /**
+     * 记录目录
+     */
+    @Value("${upload.multipart.checkpointDir:${java.io.tmpdir}/upload-checkpoint}")
+    private String checkpointDir;
+    /**
+     * 记录保留时间（小时）
+     */
+    @Value("${upload.multipart.checkpointExpire:72}")
+    private long checkpointExpire;
+
+    @PostConstruct
+    public void init() {
+        File dir = FileUtil.mkdir(checkpointDir);
+        // 清理过期记录
+        long expireTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(checkpointExpire);
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.lastModified() < expireTime) {
+                FileUtil.del(file);
+            }
+        }
+    }
+
+    /**
+     * 读取记录
+     */
+    public MultipartCheckpoint load(String uploadId) {
+        File file = getFile(uploadId);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return JSONUtil.toBean(FileUtil.readUtf8String(file), MultipartCheckpoint.class);
+        } catch (Exception e) {
+            log.error("断点记录损坏：" + uploadId, e);
+            FileUtil.del(file);
+            return null;
+        }
+    }
+
+    /**
+     * 保存记录（先写临时文件再替换，避免写入中断导致记录损坏）
+     */
+    public void save(MultipartCheckpoint checkpoint) {
+        File file = getFile(checkpoint.getUploadId());
+        File temp = new File(file.getPath() + ".tmp");
+        // 分片并发完成时串行写入
+        synchronized (checkpoint) {
+            try {
+                Files.write(temp.toPath(), JSONUtil.toJsonStr(checkpoint).getBytes(StandardCharsets.UTF_8));
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                log.error("断点记录保存失败：" + checkpoint.getUploadId(), e);
+            }
+        }
+    }
+
+    /**
+     * 删除记录
+     */
+    public void delete(String uploadId) {
+        FileUtil.del(getFile(uploadId));
+    }
+
+    private File getFile(String uploadId) {
+        return new File(checkpointDir, SecureUtil.md5(uploadId) + ".json");
+    }
+
+}
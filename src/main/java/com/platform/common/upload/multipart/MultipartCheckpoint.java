@@ -0,0 +1,68 @@
+package com.platform.common.upload.multipart;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 断点续传记录
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+public class MultipartCheckpoint {
+
+    /**
+     * 调用方上传标识
+     */
+    private String uploadId;
+    /**
+     * 文件名称
+     */
+    private String fileName;
+    /**
+     * 文件全名
+     */
+    private String fileKey;
+    /**
+     * 文件大小
+     */
+    private Long fileSize;
+    /**
+     * 分片大小
+     */
+    private Integer partSize;
+    /**
+     * 存储端分片上传标识
+     */
+    private String multipartId;
+    /**
+     * 已完成分片
+     */
+    private List<UploadPart> partList = new ArrayList<>();
+    /**
+     * 是否已合并完成
+     */
+    private boolean completed;
+
+    /**
+     * 查询已完成分片
+     */
+    public synchronized UploadPart getPart(int partNumber) {
+        for (UploadPart part : partList) {
+            if (part.getPartNumber() == partNumber) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录已完成分片
+     */
+    public synchronized void addPart(UploadPart part) {
+        partList.add(part);
+    }
+
+}
@@ -0,0 +1,295 @@
+package com.platform.common.upload.multipart;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分片上传引擎
+ * 按分片顺序读取输入流，在有界线程池中并发上传，全部成功后合并，任一失败则取消（断点续传时保留）
+ */
+@Slf4j
+@Component
+public class MultipartUploadEngine {
+
+    /**
+     * 分片最小值（minio合并要求除最后一片外不小于5MB）
+     */
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * 启用分片上传的文件大小阈值
+     */
+    @Value("${upload.multipart.threshold:33554432}")
+    private long threshold;
+    /**
+     * 分片大小
+     */
+    @Value("${upload.multipart.partSize:8388608}")
+    private int partSize;
+    /**
+     * 单个文件同时上传的分片数
+     */
+    @Value("${upload.multipart.parallelism:4}")
+    private int parallelism;
+    /**
+     * 线程数
+     */
+    @Value("${upload.multipart.threads:16}")
+    private int threads;
+    /**
+     * 队列长度
+     */
+    @Value("${upload.multipart.queueSize:256}")
+    private int queueSize;
+
+    @Autowired
+    private CheckpointJournal checkpointJournal;
+
+    /**
+     * 进行中的断点续传任务
+     */
+    private final Set<String> runningSet = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+                , new ArrayBlockingQueue<>(queueSize)
+                , new NamedThreadFactory("upload-multipart-", true)
+                // 队列满时由读取线程自行上传，形成背压
+                , new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 分片上传阈值（字节）
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 分片大小（字节）
+     */
+    public int getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * 单个文件并发上传的分片数
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 是否使用分片上传
+     */
+    public boolean isMultipart(long fileSize) {
+        return fileSize >= threshold;
+    }
+
+    /**
+     * 分片上传
+     */
+    public void upload(MultipartUploadSupport support, String fileKey, InputStream inputStream) throws Exception {
+        MultipartCheckpoint checkpoint = new MultipartCheckpoint()
+                .setFileKey(fileKey)
+                .setPartSize(partSize)
+                .setMultipartId(support.initiateMultipartUpload(fileKey));
+        try {
+            uploadParts(support, checkpoint, inputStream, false);
+            support.completeMultipartUpload(fileKey, checkpoint.getMultipartId(), checkpoint.getPartList());
+        } catch (Exception e) {
+            abort(support, fileKey, checkpoint.getMultipartId());
+            throw e;
+        }
+    }
+
+    /**
+     * 断点续传
+     * 同一uploadId重复调用时只上传缺失的分片，已完成的直接返回原记录
+     */
+    public MultipartCheckpoint upload(MultipartUploadSupport support, String uploadId, String fileName, String fileKey
+            , long fileSize, InputStreamSource source) throws Exception {
+        if (!runningSet.add(uploadId)) {
+            throw new IllegalStateException("上传任务进行中：" + uploadId);
+        }
+        try {
+            MultipartCheckpoint checkpoint = checkpointJournal.load(uploadId);
+            if (checkpoint != null && checkpoint.isCompleted()) {
+                return checkpoint;
+            }
+            if (checkpoint != null && (!Objects.equals(checkpoint.getFileSize(), fileSize)
+                    || checkpoint.getPartSize() == null)) {
+                // 文件已变化或记录不完整，放弃旧记录
+                abort(support, checkpoint.getFileKey(), checkpoint.getMultipartId());
+                checkpoint = null;
+            }
+            if (checkpoint == null) {
+                checkpoint = new MultipartCheckpoint()
+                        .setUploadId(uploadId)
+                        .setFileName(fileName)
+                        .setFileKey(fileKey)
+                        .setFileSize(fileSize)
+                        .setPartSize(partSize)
+                        .setMultipartId(support.initiateMultipartUpload(fileKey));
+                checkpointJournal.save(checkpoint);
+            }
+            // 失败时保留记录和已上传分片，供下次续传
+            try (InputStream inputStream = source.getInputStream()) {
+                uploadParts(support, checkpoint, inputStream, true);
+            }
+            support.completeMultipartUpload(checkpoint.getFileKey(), checkpoint.getMultipartId(), checkpoint.getPartList());
+            checkpoint.setCompleted(true);
+            checkpointJournal.save(checkpoint);
+            return checkpoint;
+        } finally {
+            runningSet.remove(uploadId);
+        }
+    }
+
+    /**
+     * 并发上传缺失分片，完成的分片记入checkpoint
+     */
+    private void uploadParts(MultipartUploadSupport support, MultipartCheckpoint checkpoint, InputStream inputStream
+            , boolean journal) throws Exception {
+        String fileKey = checkpoint.getFileKey();
+        String multipartId = checkpoint.getMultipartId();
+        int size = checkpoint.getPartSize();
+        // 限制单个文件在途分片数，内存占用不超过 (parallelism + 1) * partSize
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<UploadPart>> futureList = new ArrayList<>();
+        int partNumber = 1;
+        while (true) {
+            UploadPart uploaded = checkpoint.getPart(partNumber);
+            if (uploaded != null) {
+                // 已上传的分片直接跳过
+                long skipped = skipFully(inputStream, uploaded.getPartSize());
+                partNumber++;
+                if (skipped < size) {
+                    break;
+                }
+                continue;
+            }
+            byte[] buffer = new byte[size];
+            int length = readFully(inputStream, buffer);
+            if (length == 0 && partNumber > 1) {
+                break;
+            }
+            permits.acquire();
+            if (failure.get() != null) {
+                permits.release();
+                break;
+            }
+            final int number = partNumber;
+            futureList.add(executor.submit(() -> {
+                try {
+                    String etag = support.uploadPart(fileKey, multipartId, number, buffer, length);
+                    UploadPart part = new UploadPart(number, etag, (long) length);
+                    checkpoint.addPart(part);
+                    if (journal) {
+                        checkpointJournal.save(checkpoint);
+                    }
+                    return part;
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    permits.release();
+                }
+            }));
+            partNumber++;
+            if (length < size) {
+                break;
+            }
+        }
+        for (Future<UploadPart> future : futureList) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                failure.compareAndSet(null, cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        checkpoint.getPartList().sort(Comparator.comparing(UploadPart::getPartNumber));
+    }
+
+    /**
+     * 取消上传
+     */
+    private static void abort(MultipartUploadSupport support, String fileKey, String uploadId) {
+        try {
+            support.abortMultipartUpload(fileKey, uploadId);
+        } catch (Exception e) {
+            log.error("取消分片上传失败：" + fileKey, e);
+        }
+    }
+
+    /**
+     * 跳过指定字节数或到达流末尾
+     */
+    private static long skipFully(InputStream inputStream, long length) throws IOException {
+        long skipped = 0;
+        while (skipped < length) {
+            long count = inputStream.skip(length - skipped);
+            if (count <= 0) {
+                if (inputStream.read() == -1) {
+                    break;
+                }
+                count = 1;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /**
+     * 读满缓冲区或到达流末尾
+     */
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = inputStream.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.platform.common.upload.multipart;
+
+import java.util.List;
+
+/**
+ * 分片上传原语（由各存储实现）
+ */
+public interface MultipartUploadSupport {
+
+    /**
+     * 初始化分片上传，返回uploadId
+     */
+    String initiateMultipartUpload(String fileKey) throws Exception;
+
+    /**
+     * 上传分片，返回ETag
+     */
+    String uploadPart(String fileKey, String uploadId, int partNumber, byte[] data, int length) throws Exception;
+
+    /**
+     * 合并分片
+     */
+    void completeMultipartUpload(String fileKey, String uploadId, List<UploadPart> partList) throws Exception;
+
+    /**
+     * 取消分片上传
+     */
+    void abortMultipartUpload(String fileKey, String uploadId) throws Exception;
+
+}
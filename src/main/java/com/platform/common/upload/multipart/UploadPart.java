@@ -0,0 +1,30 @@
+package com.platform.common.upload.multipart;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * 已上传分片
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true) // 链式调用
+public class UploadPart {
+
+    /**
+     * 分片序号（从1开始）
+     */
+    private Integer partNumber;
+    /**
+     * 分片ETag
+     */
+    private String etag;
+    /**
+     * 分片大小
+     */
+    private Long partSize;
+
+}
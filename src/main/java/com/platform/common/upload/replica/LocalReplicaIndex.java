@@ -0,0 +1,110 @@
+package com.platform.common.upload.replica;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONConfig;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 副本索引（fileKey -> 各存储上的文件）
+ * 内存LRU缓存热点文件，全量索引按摘要前两位分目录存放在本地磁盘
+ */
+@Slf4j
+public class LocalReplicaIndex {
+
+    private final File indexDir;
+
+    private final LRUCache<String, Map<String, String>> cache;
+
+    public LocalReplicaIndex(String indexDir, int cacheSize) {
+        this.indexDir = FileUtil.mkdir(indexDir);
+        this.cache = CacheUtil.newLRUCache(cacheSize);
+    }
+
+    /**
+     * 查询各存储上的文件（存储编码 -> fileKey），不存在返回null
+     */
+    public synchronized Map<String, String> get(String fileKey) {
+        Map<String, String> replicaMap = cache.get(fileKey, false);
+        if (replicaMap != null) {
+            return Collections.unmodifiableMap(replicaMap);
+        }
+        File file = getFile(fileKey);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(FileUtil.readUtf8String(file)
+                    , JSONConfig.create().setIgnoreNullValue(false));
+            replicaMap = new LinkedHashMap<>();
+            for (String type : json.keySet()) {
+                replicaMap.put(type, json.getStr(type));
+            }
+            cache.put(fileKey, replicaMap);
+            return Collections.unmodifiableMap(replicaMap);
+        } catch (Exception e) {
+            log.error("副本索引读取失败：" + fileKey, e);
+            return null;
+        }
+    }
+
+    /**
+     * 记录存储上的文件
+     */
+    public synchronized void put(String fileKey, String type, String replicaKey) {
+        Map<String, String> replicaMap = get(fileKey);
+        Map<String, String> dataMap = replicaMap == null ? new LinkedHashMap<>() : new LinkedHashMap<>(replicaMap);
+        dataMap.put(type, replicaKey);
+        save(fileKey, dataMap);
+    }
+
+    /**
+     * 移除存储上的文件，全部移除后删除索引
+     */
+    public synchronized void remove(String fileKey, String type) {
+        Map<String, String> replicaMap = get(fileKey);
+        if (replicaMap == null || !replicaMap.containsKey(type)) {
+            return;
+        }
+        Map<String, String> dataMap = new LinkedHashMap<>(replicaMap);
+        dataMap.remove(type);
+        if (dataMap.isEmpty()) {
+            cache.remove(fileKey);
+            FileUtil.del(getFile(fileKey));
+            return;
+        }
+        save(fileKey, dataMap);
+    }
+
+    private void save(String fileKey, Map<String, String> dataMap) {
+        File file = getFile(fileKey);
+        try {
+            FileUtil.mkParentDirs(file);
+            File temp = new File(file.getPath() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+            Files.write(temp.toPath(), JSONUtil.toJsonStr(dataMap).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cache.put(fileKey, dataMap);
+        } catch (Exception e) {
+            log.error("副本索引写入失败：" + fileKey, e);
+        }
+    }
+
+    private File getFile(String fileKey) {
+        String name = SecureUtil.md5(fileKey);
+        return new File(indexDir, name.substring(0, 2) + File.separator + name);
+    }
+
+}
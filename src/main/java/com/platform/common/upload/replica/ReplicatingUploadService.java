@@ -0,0 +1,706 @@
+package com.platform.common.upload.replica;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.lang.Dict;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.IdUtil;
+import com.platform.common.upload.delete.DeleteJournal;
+import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 多存储副本：同一文件并发写入主存储（upload.uploadType）和副本存储，达到写成功数后返回
+ * <p>
+ * 上传文件（MultipartFile）只读取一次，通过分发缓冲同时写入各存储；
+ * 返回后仍未完成的副本继续在后台写入，失败或超时的副本记入修复日志，后台从已有副本复制补齐
+ * 各存储上的fileKey记录在副本索引中，读取时按顺序尝试，删除时全部删除
+ */
+@Slf4j
+@Primary
+@Service("replicatingUploadService")
+@ConditionalOnProperty(prefix = "upload.replica", name = "enabled", havingValue = "true")
+public class ReplicatingUploadService implements UploadService {
+
+    /**
+     * 分发缓冲块大小
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 修复日志分隔符
+     */
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * 主存储
+     */
+    @Value("${upload.uploadType}")
+    private String uploadType;
+    /**
+     * 副本存储（逗号分隔）
+     */
+    @Value("${upload.replica.types}")
+    private String types;
+    /**
+     * 写成功数（含主存储），小于1时为全部存储
+     */
+    @Value("${upload.replica.quorum:0}")
+    private int quorum;
+    /**
+     * 写入超时（毫秒），超时仍未完成的副本转入修复
+     */
+    @Value("${upload.replica.timeout:300000}")
+    private long timeout;
+    /**
+     * 分发缓冲大小（字节），最慢的副本落后超过该值时领先的副本等待
+     */
+    @Value("${upload.replica.bufferSize:16777216}")
+    private long bufferSize;
+    /**
+     * 等待落后副本的时间（毫秒），超时后放弃该副本转入修复
+     */
+    @Value("${upload.replica.lagTimeout:5000}")
+    private long lagTimeout;
+    /**
+     * 写入线程数
+     */
+    @Value("${upload.replica.threads:32}")
+    private int threads;
+    /**
+     * 索引目录（必填），需持久化，多节点部署时使用共享目录
+     */
+    @Value("${upload.replica.indexDir:}")
+    private String indexDir;
+    /**
+     * 内存缓存条数
+     */
+    @Value("${upload.replica.cacheSize:10000}")
+    private int cacheSize;
+    /**
+     * 修复间隔（毫秒）
+     */
+    @Value("${upload.replica.repairInterval:10000}")
+    private long repairInterval;
+    /**
+     * 修复失败重试次数
+     */
+    @Value("${upload.replica.maxRetries:3}")
+    private int maxRetries;
+    /**
+     * 批量上传并发数
+     */
+    @Value("${upload.batch.parallelism:8}")
+    private int batchParallelism;
+    /**
+     * 批量上传队列长度，队列满时由调用线程上传
+     */
+    @Value("${upload.batch.queueSize:1024}")
+    private int batchQueueSize;
+    /**
+     * 多存储路由与副本不能同时启用
+     */
+    @Value("${upload.route.enabled:false}")
+    private boolean routeEnabled;
+
+    private final Map<String, UploadService> serviceMap = new HashMap<>();
+
+    /**
+     * 写入顺序，主存储在前
+     */
+    private final List<UploadService> replicaList = new ArrayList<>();
+
+    private UploadService primaryService;
+
+    private LocalReplicaIndex replicaIndex;
+
+    private DeleteJournal repairJournal;
+
+    /**
+     * 待修复（存储编码 + 分隔符 + fileKey）
+     */
+    private final Set<String> repairSet = new LinkedHashSet<>();
+
+    /**
+     * 修复失败次数
+     */
+    private final Map<String, Integer> retryMap = new HashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 批量上传线程池，与副本写入线程池分开，批量上传的文件等待副本写入时不会互相占用
+     */
+    private ThreadPoolExecutor batchExecutor;
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    public ReplicatingUploadService(List<UploadService> serviceList) {
+        for (UploadService uploadService : serviceList) {
+            serviceMap.put(uploadService.getUploadType().getCode(), uploadService);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (routeEnabled) {
+            throw new RuntimeException("多存储路由与副本不能同时启用");
+        }
+        // 索引丢失后无法找到副本，不使用临时目录
+        if (StringUtils.isEmpty(indexDir)) {
+            throw new RuntimeException("副本索引目录未配置：upload.replica.indexDir");
+        }
+        Set<String> typeSet = new LinkedHashSet<>();
+        typeSet.add(uploadType);
+        for (String type : types.split(",")) {
+            if (!type.trim().isEmpty()) {
+                typeSet.add(type.trim());
+            }
+        }
+        for (String type : typeSet) {
+            UploadService uploadService = serviceMap.get(type);
+            if (uploadService == null) {
+                throw new RuntimeException("存储未启用：" + type);
+            }
+            replicaList.add(uploadService);
+        }
+        this.primaryService = replicaList.get(0);
+        if (quorum < 1 || quorum > replicaList.size()) {
+            quorum = replicaList.size();
+        }
+        this.replicaIndex = new LocalReplicaIndex(indexDir, cacheSize);
+        this.repairJournal = new DeleteJournal(new File(indexDir, "repair.log"));
+        repairSet.addAll(repairJournal.load());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>()
+                , new NamedThreadFactory("upload-replica-", true));
+        executor.allowCoreThreadTimeOut(true);
+        this.batchExecutor = new ThreadPoolExecutor(batchParallelism, batchParallelism, 60, TimeUnit.SECONDS
+                , new ArrayBlockingQueue<>(batchQueueSize), new NamedThreadFactory("upload-replica-batch-", true)
+                , new ThreadPoolExecutor.CallerRunsPolicy());
+        batchExecutor.allowCoreThreadTimeOut(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("upload-repair-", true));
+        scheduler.scheduleWithFixedDelay(this::repair, repairInterval, repairInterval, TimeUnit.MILLISECONDS);
+        log.info("多存储副本已启用：{}，写成功数：{}", typeSet, quorum);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        batchExecutor.shutdown();
+        executor.shutdown();
+        try {
+            repairJournal.close();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return primaryService.getUploadType();
+    }
+
+    @Override
+    public String getServerUrl() {
+        return primaryService.getServerUrl();
+    }
+
+    /**
+     * 客户端直传只写主存储，不做副本
+     */
+    @Override
+    public Dict getFileToken() {
+        return primaryService.getFileToken();
+    }
+
+    @Override
+    public List<Dict> getFileTokens(int count) {
+        return primaryService.getFileTokens(count);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return write(file, null);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return write(index -> replicaList.get(index).uploadFile(file));
+    }
+
+    /**
+     * 本地文件各存储分别读取，其他只读取一次分发给各存储
+     */
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        if (source.getPath() != null) {
+            return write(index -> replicaList.get(index).uploadFile(source));
+        }
+        return tee(source, source.getLength(), (index, teeBuffer) -> replicaList.get(index).uploadFile(UploadSource.of(
+                source.getFileName(), source.getContentType(), source.getLength(), teeBuffer.getInputStream(index))));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        return write(file, uploadId);
+    }
+
+    /**
+     * 各存储使用不同的续传标识，互不影响
+     */
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        return write(index -> {
+            UploadService uploadService = replicaList.get(index);
+            return uploadService.uploadFile(file, uploadId + ":" + uploadService.getUploadType().getCode());
+        });
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        return batchUpload(fileList, File::getName, this::uploadFile);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        return batchUpload(fileList, MultipartFile::getOriginalFilename, this::uploadFile);
+    }
+
+    /**
+     * 按地址前缀找到存储，都不匹配时使用主存储
+     */
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        UploadService target = primaryService;
+        int matchLength = 0;
+        for (UploadService uploadService : replicaList) {
+            String serverUrl = uploadService.getServerUrl();
+            if (!StringUtils.isEmpty(serverUrl) && serverUrl.length() > matchLength && urlPath.startsWith(serverUrl)) {
+                target = uploadService;
+                matchLength = serverUrl.length();
+            }
+        }
+        return target.getInputStream(urlPath);
+    }
+
+    /**
+     * 按写入顺序读取，失败时读取下一个副本
+     */
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        RuntimeException error = null;
+        for (Map.Entry<String, String> entry : getReplicaMap(fileKey).entrySet()) {
+            try {
+                return serviceMap.get(entry.getKey()).getInputStream(entry.getValue(), offset, length);
+            } catch (RuntimeException e) {
+                log.warn("副本读取失败：{}，{}", entry.getKey(), entry.getValue());
+                error = e;
+            }
+        }
+        throw error != null ? error : new RuntimeException("获取文件流失败");
+    }
+
+    @Override
+    public boolean delFile(File file) {
+        return primaryService.delFile(file);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    /**
+     * 删除全部副本，部分副本删除失败时结果为失败，重试时只删除剩余副本
+     */
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        Map<String, List<String>> groupMap = new LinkedHashMap<>();
+        Map<String, Map<String, String>> replicaMapList = new HashMap<>();
+        for (String fileKey : fileKeys) {
+            Map<String, String> replicaMap = getReplicaMap(fileKey);
+            replicaMapList.put(fileKey, replicaMap);
+            replicaMap.forEach((type, replicaKey) -> groupMap.computeIfAbsent(type, key -> new ArrayList<>()).add(replicaKey));
+        }
+        Map<String, DeleteFileVo> resultMap = new HashMap<>();
+        groupMap.forEach((type, keyList) -> {
+            List<DeleteFileVo> resultList;
+            try {
+                resultList = serviceMap.get(type).delFiles(keyList);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                resultList = new ArrayList<>(keyList.size());
+                for (String replicaKey : keyList) {
+                    resultList.add(new DeleteFileVo().setFileKey(replicaKey).setSuccess(false).setErrorMsg(e.getMessage()));
+                }
+            }
+            for (DeleteFileVo result : resultList) {
+                resultMap.put(type + SEPARATOR + result.getFileKey(), result);
+            }
+        });
+        List<DeleteFileVo> dataList = new ArrayList<>(fileKeys.size());
+        for (String fileKey : fileKeys) {
+            DeleteFileVo data = new DeleteFileVo().setFileKey(fileKey).setSuccess(true);
+            replicaMapList.get(fileKey).forEach((type, replicaKey) -> {
+                DeleteFileVo result = resultMap.get(type + SEPARATOR + replicaKey);
+                if (result != null && Boolean.TRUE.equals(result.getSuccess())) {
+                    replicaIndex.remove(fileKey, type);
+                } else {
+                    data.setSuccess(false).setErrorMsg(type + "：" + (result == null ? "删除失败" : result.getErrorMsg()));
+                }
+            });
+            dataList.add(data);
+        }
+        return dataList;
+    }
+
+    /**
+     * 上传文件只读取一次，分发给各存储
+     */
+    private UploadFileVo write(MultipartFile file, String uploadId) {
+        return tee(file, file.getSize(), (index, teeBuffer) -> {
+            UploadService uploadService = replicaList.get(index);
+            TeeMultipartFile teeFile = new TeeMultipartFile(file, teeBuffer, index);
+            if (uploadId == null) {
+                return uploadService.uploadFile(teeFile);
+            }
+            return uploadService.uploadFile(teeFile, uploadId + ":" + uploadService.getUploadType().getCode());
+        });
+    }
+
+    /**
+     * 从分发缓冲读取，各存储读取完成后释放
+     */
+    private UploadFileVo tee(InputStreamSource source, long size, BiFunction<Integer, TeeBuffer, UploadFileVo> uploader) {
+        TeeBuffer teeBuffer;
+        try {
+            teeBuffer = new TeeBuffer(source.getInputStream(), size, replicaList.size(), CHUNK_SIZE
+                    , bufferSize, lagTimeout, replicaList.size() - quorum);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败");
+        }
+        return new ReplicaWrite(teeBuffer).execute(index -> {
+            try {
+                return uploader.apply(index, teeBuffer);
+            } finally {
+                teeBuffer.close(index);
+            }
+        });
+    }
+
+    private UploadFileVo write(IntFunction<UploadFileVo> uploader) {
+        return new ReplicaWrite(null).execute(uploader);
+    }
+
+    /**
+     * 并发上传，按输入顺序返回结果，单个文件失败不影响其他文件
+     */
+    private <T> List<UploadFileVo> batchUpload(List<T> fileList, Function<T, String> fileNameGetter
+            , Function<T, UploadFileVo> uploader) {
+        List<Future<UploadFileVo>> futureList = new ArrayList<>(fileList.size());
+        for (T file : fileList) {
+            futureList.add(batchExecutor.submit(() -> uploader.apply(file).setSuccess(true)));
+        }
+        List<UploadFileVo> dataList = new ArrayList<>(fileList.size());
+        for (int i = 0; i < futureList.size(); i++) {
+            try {
+                dataList.add(futureList.get(i).get());
+            } catch (Exception e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.error(cause.getMessage(), cause);
+                dataList.add(new UploadFileVo()
+                        .setFileName(fileNameGetter.apply(fileList.get(i)))
+                        .setSuccess(false)
+                        .setErrorMsg(cause.getMessage()));
+            }
+        }
+        return dataList;
+    }
+
+    /**
+     * 各存储上的文件，不在索引中时为主存储上的同名文件（启用副本前上传的文件）
+     */
+    private Map<String, String> getReplicaMap(String fileKey) {
+        Map<String, String> replicaMap = replicaIndex.get(fileKey);
+        if (replicaMap == null || replicaMap.isEmpty()) {
+            Map<String, String> dataMap = new LinkedHashMap<>();
+            dataMap.put(primaryService.getUploadType().getCode(), fileKey);
+            return dataMap;
+        }
+        // 按写入顺序
+        Map<String, String> dataMap = new LinkedHashMap<>();
+        for (UploadService uploadService : replicaList) {
+            String type = uploadService.getUploadType().getCode();
+            if (replicaMap.containsKey(type)) {
+                dataMap.put(type, replicaMap.get(type));
+            }
+        }
+        return dataMap;
+    }
+
+    /**
+     * 加入修复
+     */
+    private synchronized void addRepair(String type, String fileKey) {
+        String line = type + SEPARATOR + fileKey;
+        try {
+            repairJournal.append(Collections.singletonList(line));
+        } catch (Exception e) {
+            log.error("副本修复日志写入失败：" + line, e);
+        }
+        repairSet.add(line);
+    }
+
+    /**
+     * 从已有副本复制到缺失的存储
+     */
+    private void repair() {
+        List<String> lineList;
+        synchronized (this) {
+            if (repairSet.isEmpty()) {
+                return;
+            }
+            lineList = new ArrayList<>(repairSet);
+        }
+        for (String line : lineList) {
+            int index = line.indexOf(SEPARATOR);
+            String type = line.substring(0, index);
+            String fileKey = line.substring(index + 1);
+            boolean success;
+            try {
+                success = repair(type, fileKey);
+            } catch (Exception e) {
+                log.error("副本修复失败：" + line, e);
+                success = false;
+            }
+            synchronized (this) {
+                if (success) {
+                    retryMap.remove(line);
+                    repairSet.remove(line);
+                } else if (retryMap.merge(line, 1, Integer::sum) > maxRetries) {
+                    log.error("副本修复失败，已放弃：{}", line);
+                    retryMap.remove(line);
+                    repairSet.remove(line);
+                }
+            }
+        }
+        synchronized (this) {
+            repairJournal.rewrite(repairSet);
+        }
+    }
+
+    private boolean repair(String type, String fileKey) throws Exception {
+        Map<String, String> replicaMap = replicaIndex.get(fileKey);
+        UploadService target = serviceMap.get(type);
+        if (replicaMap == null || replicaMap.containsKey(type) || target == null) {
+            // 已删除、已修复或存储已停用
+            return true;
+        }
+        Map.Entry<String, String> source = replicaMap.entrySet().iterator().next();
+        File temp = new File(indexDir, "repair" + File.separator + IdUtil.objectId() + getFileExtension(source.getValue()));
+        FileUtil.mkParentDirs(temp);
+        try {
+            try (InputStream inputStream = serviceMap.get(source.getKey()).getInputStream(source.getValue(), 0, -1)) {
+                Files.copy(inputStream, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            UploadFileVo fileVo = target.uploadFile(temp);
+            replicaIndex.put(fileKey, type, fileVo.getFileKey());
+            log.info("副本已修复：{}，{}", type, fileKey);
+            return true;
+        } finally {
+            FileUtil.del(temp);
+        }
+    }
+
+    private static String getFileExtension(String fileName) {
+        if (StringUtils.isEmpty(fileName)) {
+            return "";
+        }
+        String extension = FileNameUtil.extName(fileName);
+        return StringUtils.isEmpty(extension) ? "" : "." + extension;
+    }
+
+    /**
+     * 单个文件的并发写入
+     */
+    private class ReplicaWrite {
+
+        private final TeeBuffer teeBuffer;
+
+        private final UploadFileVo[] results = new UploadFileVo[replicaList.size()];
+
+        private final Throwable[] errors = new Throwable[replicaList.size()];
+
+        private int successCount;
+
+        private int failCount;
+
+        /**
+         * 结果已返回
+         */
+        private boolean decided;
+
+        /**
+         * 返回的fileKey，写入失败时为null
+         */
+        private String fileKey;
+
+        private ReplicaWrite(TeeBuffer teeBuffer) {
+            this.teeBuffer = teeBuffer;
+        }
+
+        private UploadFileVo execute(IntFunction<UploadFileVo> uploader) {
+            for (int i = 0; i < replicaList.size(); i++) {
+                int index = i;
+                CompletableFuture.supplyAsync(() -> uploader.apply(index), executor)
+                        .whenComplete((fileVo, e) -> complete(index, fileVo, e));
+            }
+            long deadline = System.currentTimeMillis() + timeout;
+            synchronized (this) {
+                while (successCount < quorum && failCount <= replicaList.size() - quorum) {
+                    long remain = deadline - System.currentTimeMillis();
+                    if (remain <= 0) {
+                        break;
+                    }
+                    try {
+                        wait(remain);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                decided = true;
+                if (successCount < quorum) {
+                    fail();
+                }
+                return succeed();
+            }
+        }
+
+        private synchronized void complete(int index, UploadFileVo fileVo, Throwable e) {
+            String type = replicaList.get(index).getUploadType().getCode();
+            boolean success = e == null && fileVo != null && !StringUtils.isEmpty(fileVo.getFileKey());
+            if (!decided) {
+                if (success) {
+                    results[index] = fileVo;
+                    successCount++;
+                } else {
+                    errors[index] = e;
+                    failCount++;
+                }
+                notifyAll();
+                return;
+            }
+            if (fileKey == null) {
+                // 写入失败，删除已写入的副本
+                if (success) {
+                    deleteQuietly(type, fileVo.getFileKey());
+                }
+                return;
+            }
+            if (success) {
+                replicaIndex.put(fileKey, type, fileVo.getFileKey());
+            } else {
+                log.warn("副本写入失败，转入修复：{}，{}", type, fileKey);
+                addRepair(type, fileKey);
+            }
+        }
+
+        /**
+         * 达到写成功数，记录索引，未完成的副本超时后转入修复
+         */
+        private UploadFileVo succeed() {
+            UploadFileVo result = null;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != null && result == null) {
+                    result = results[i];
+                    fileKey = result.getFileKey();
+                }
+            }
+            for (int i = 0; i < results.length; i++) {
+                String type = replicaList.get(i).getUploadType().getCode();
+                if (results[i] != null) {
+                    replicaIndex.put(fileKey, type, results[i].getFileKey());
+                } else if (errors[i] != null) {
+                    log.warn("副本写入失败，转入修复：{}，{}", type, fileKey);
+                    addRepair(type, fileKey);
+                }
+            }
+            if (teeBuffer != null && successCount + failCount < replicaList.size()) {
+                scheduler.schedule(teeBuffer::abortAll, timeout, TimeUnit.MILLISECONDS);
+            }
+            return BeanUtil.copyProperties(result, UploadFileVo.class);
+        }
+
+        /**
+         * 未达到写成功数，删除已写入的副本
+         */
+        private void fail() {
+            if (teeBuffer != null) {
+                teeBuffer.abortAll();
+            }
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != null) {
+                    deleteQuietly(replicaList.get(i).getUploadType().getCode(), results[i].getFileKey());
+                }
+            }
+            for (Throwable error : errors) {
+                if (error != null) {
+                    log.error(error.getMessage(), error);
+                    break;
+                }
+            }
+            throw new RuntimeException("文件上传失败");
+        }
+
+        private void deleteQuietly(String type, String replicaKey) {
+            executor.execute(() -> {
+                try {
+                    serviceMap.get(type).delFiles(Collections.singletonList(replicaKey));
+                } catch (Exception e) {
+                    log.error("副本清理失败：" + type + "，" + replicaKey, e);
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.platform.common.upload.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分发缓冲：源数据只读一次，按块分发给多个读取方
+ * <p>
+ * 缓冲块数有上限，最慢的读取方落后超过上限时领先的读取方等待；
+ * 等待超过 lagTimeout 时放弃最慢的读取方（最多放弃 maxDetach 个），其读取抛出异常
+ */
+@Slf4j
+public class TeeBuffer implements Closeable {
+
+    private final InputStream source;
+
+    /**
+     * 源数据大小
+     */
+    private final long size;
+
+    private final int chunkSize;
+
+    /**
+     * 最多缓冲的块数
+     */
+    private final int maxChunks;
+
+    /**
+     * 领先方等待超过该时间（毫秒）后放弃最慢的读取方
+     */
+    private final long lagTimeout;
+
+    /**
+     * 最多放弃的读取方数量
+     */
+    private final int maxDetach;
+
+    /**
+     * 已缓冲的块，第一个块的序号为 firstIndex
+     */
+    private final List<byte[]> chunkList = new ArrayList<>();
+
+    private long firstIndex;
+
+    /**
+     * 已读取的块数
+     */
+    private long chunkCount;
+
+    /**
+     * 已读取的字节数
+     */
+    private long loadedBytes;
+
+    /**
+     * 各读取方的位置（字节）
+     */
+    private final long[] positions;
+
+    /**
+     * 读取方是否仍在读取
+     */
+    private final boolean[] actives;
+
+    /**
+     * 读取方是否被放弃
+     */
+    private final boolean[] detaches;
+
+    private int detachCount;
+
+    private boolean loading;
+
+    private boolean eof;
+
+    private IOException error;
+
+    private boolean sourceClosed;
+
+    public TeeBuffer(InputStream source, long size, int readers, int chunkSize, long bufferSize, long lagTimeout
+            , int maxDetach) {
+        this.source = source;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.maxChunks = (int) Math.max(bufferSize / chunkSize, 2);
+        this.lagTimeout = lagTimeout;
+        this.maxDetach = maxDetach;
+        this.positions = new long[readers];
+        this.actives = new boolean[readers];
+        this.detaches = new boolean[readers];
+        Arrays.fill(actives, true);
+    }
+
+    /**
+     * 读取方的输入流（每个读取方只能读取一次）
+     */
+    public InputStream getInputStream(int reader) {
+        return new ReaderInputStream(reader);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 读取方结束，不再占用缓冲
+     */
+    public synchronized void close(int reader) {
+        if (!actives[reader]) {
+            return;
+        }
+        actives[reader] = false;
+        release();
+        notifyAll();
+        closeSourceIfIdle();
+    }
+
+    /**
+     * 放弃读取方，后续读取抛出异常
+     */
+    public synchronized void abort(int reader) {
+        if (!actives[reader]) {
+            return;
+        }
+        detaches[reader] = true;
+        close(reader);
+    }
+
+    /**
+     * 放弃全部读取方
+     */
+    public synchronized void abortAll() {
+        for (int i = 0; i < actives.length; i++) {
+            abort(i);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        abortAll();
+    }
+
+    private int read(int reader, byte[] buffer, int offset, int length) throws IOException {
+        long waitStart = -1;
+        while (true) {
+            synchronized (this) {
+                while (true) {
+                    if (detaches[reader]) {
+                        throw new IOException("副本写入落后或已取消");
+                    }
+                    long position = positions[reader];
+                    long index = position / chunkSize;
+                    if (index < chunkCount) {
+                        byte[] chunk = chunkList.get((int) (index - firstIndex));
+                        int chunkOffset = (int) (position % chunkSize);
+                        if (chunkOffset >= chunk.length) {
+                            // 最后一块已读完
+                            return -1;
+                        }
+                        int count = Math.min(length, chunk.length - chunkOffset);
+                        System.arraycopy(chunk, chunkOffset, buffer, offset, count);
+                        positions[reader] = position + count;
+                        if (chunkOffset + count == chunk.length) {
+                            release();
+                            notifyAll();
+                        }
+                        return count;
+                    }
+                    if (eof) {
+                        return -1;
+                    }
+                    if (error != null) {
+                        throw error;
+                    }
+                    if (!loading && chunkCount - firstIndex < maxChunks) {
+                        loading = true;
+                        break;
+                    }
+                    if (!loading) {
+                        // 缓冲已满，等待最慢的读取方
+                        long now = System.currentTimeMillis();
+                        if (waitStart < 0) {
+                            waitStart = now;
+                        } else if (now - waitStart >= lagTimeout && detachSlowest(reader)) {
+                            waitStart = -1;
+                            continue;
+                        }
+                    }
+                    try {
+                        wait(Math.max(lagTimeout / 10, 10));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("读取已中断");
+                    }
+                }
+            }
+            load();
+        }
+    }
+
+    /**
+     * 读取下一块（不持有锁，其他读取方可继续读取已缓冲的块）
+     */
+    private void load() throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        int count;
+        try {
+            count = IOUtils.read(source, chunk);
+        } catch (IOException e) {
+            synchronized (this) {
+                error = e;
+                loading = false;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (count < chunkSize) {
+                chunk = Arrays.copyOf(chunk, count);
+                eof = true;
+            }
+            if (count > 0) {
+                chunkList.add(chunk);
+                chunkCount++;
+                loadedBytes += count;
+            }
+            loading = false;
+            notifyAll();
+            if (eof) {
+                closeSource();
+            }
+        }
+    }
+
+    /**
+     * 释放所有读取方都已读完的块
+     */
+    private void release() {
+        long minIndex = Long.MAX_VALUE;
+        for (int i = 0; i < positions.length; i++) {
+            if (actives[i]) {
+                minIndex = Math.min(minIndex, positions[i] / chunkSize);
+            }
+        }
+        if (minIndex == Long.MAX_VALUE) {
+            minIndex = chunkCount;
+        }
+        int count = (int) Math.min(minIndex - firstIndex, chunkList.size());
+        if (count > 0) {
+            chunkList.subList(0, count).clear();
+            firstIndex += count;
+        }
+    }
+
+    /**
+     * 放弃最慢的读取方
+     */
+    private boolean detachSlowest(int reader) {
+        if (detachCount >= maxDetach) {
+            return false;
+        }
+        int slowest = -1;
+        for (int i = 0; i < positions.length; i++) {
+            if (i != reader && actives[i] && (slowest < 0 || positions[i] < positions[slowest])) {
+                slowest = i;
+            }
+        }
+        if (slowest < 0) {
+            return false;
+        }
+        log.warn("副本写入落后，放弃第{}个副本", slowest + 1);
+        detachCount++;
+        abort(slowest);
+        return true;
+    }
+
+    private void closeSourceIfIdle() {
+        for (boolean active : actives) {
+            if (active) {
+                return;
+            }
+        }
+        chunkList.clear();
+        closeSource();
+    }
+
+    private void closeSource() {
+        if (sourceClosed) {
+            return;
+        }
+        sourceClosed = true;
+        IOUtils.closeQuietly(source);
+    }
+
+    /**
+     * 单个读取方的输入流
+     */
+    private class ReaderInputStream extends InputStream {
+
+        private final int reader;
+
+        private ReaderInputStream(int reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read(buffer, 0, 1);
+            return count < 0 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            return TeeBuffer.this.read(reader, buffer, offset, length);
+        }
+
+        /**
+         * 已缓冲、不阻塞即可读取的字节数
+         */
+        @Override
+        public int available() {
+            synchronized (TeeBuffer.this) {
+                if (detaches[reader]) {
+                    return 0;
+                }
+                return (int) Math.min(Math.max(loadedBytes - positions[reader], 0), Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void close() {
+            TeeBuffer.this.close(reader);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.platform.common.upload.replica;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 副本写入使用的文件，内容从分发缓冲读取，只能读取一次
+ */
+public class TeeMultipartFile implements MultipartFile {
+
+    private final MultipartFile file;
+
+    private final TeeBuffer teeBuffer;
+
+    private final int reader;
+
+    private final AtomicBoolean opened = new AtomicBoolean();
+
+    public TeeMultipartFile(MultipartFile file, TeeBuffer teeBuffer, int reader) {
+        this.file = file;
+        this.teeBuffer = teeBuffer;
+        this.reader = reader;
+    }
+
+    @Override
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return file.getOriginalFilename();
+    }
+
+    @Override
+    public String getContentType() {
+        return file.getContentType();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return teeBuffer.getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return teeBuffer.getSize();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        try (InputStream inputStream = getInputStream()) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!opened.compareAndSet(false, true)) {
+            throw new IOException("副本文件只能读取一次");
+        }
+        return teeBuffer.getInputStream(reader);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        try (InputStream inputStream = getInputStream();
+             OutputStream outputStream = Files.newOutputStream(dest.toPath())) {
+            IOUtils.copyLarge(inputStream, outputStream);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.platform.common.upload.resilience;
+
+/**
+ * 自适应并发上限（AIMD）：调用正常且并发用到上限一半以上时上限加性增长（每轮约加1），
+ * 慢调用或失败时按比例缩减，存储变慢时排队等待而不是堆积更多请求
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final long acquireTimeout;
+
+    private double limit;
+
+    private int inflight;
+
+    public AdaptiveConcurrencyLimit(ResilienceProperties properties) {
+        this.minLimit = Math.max(properties.getMinLimit(), 1);
+        this.maxLimit = Math.max(properties.getMaxLimit(), minLimit);
+        this.backoffRatio = properties.getBackoffRatio();
+        this.acquireTimeout = properties.getAcquireTimeout();
+        this.limit = Math.min(Math.max(properties.getInitialLimit(), minLimit), maxLimit);
+    }
+
+    /**
+     * 获取许可，达到上限时最多等待 acquireTimeout
+     */
+    public synchronized boolean tryAcquire() {
+        long deadline = System.currentTimeMillis() + acquireTimeout;
+        while (inflight >= (int) limit) {
+            long remain = deadline - System.currentTimeMillis();
+            if (remain <= 0) {
+                return false;
+            }
+            try {
+                wait(remain);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        inflight++;
+        return true;
+    }
+
+    /**
+     * 归还许可
+     *
+     * @param dropped 慢调用或失败
+     */
+    public synchronized void release(boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inflight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        inflight--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInflight() {
+        return inflight;
+    }
+
+}
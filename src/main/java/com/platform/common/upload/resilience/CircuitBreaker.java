@@ -0,0 +1,142 @@
+package com.platform.common.upload.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 熔断器：最近 windowSize 次调用失败率达到阈值时熔断，熔断时间过后放行 halfOpenCalls 个请求探测，
+ * 全部成功后恢复，任一失败重新熔断
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+
+    private final int minimumCalls;
+
+    private final int failureRate;
+
+    private final long openDuration;
+
+    private final int halfOpenCalls;
+
+    /**
+     * 最近调用结果（true为失败），环形记录
+     */
+    private final boolean[] window;
+
+    private int windowIndex;
+
+    private int callCount;
+
+    private int failureCount;
+
+    private State state = State.CLOSED;
+
+    private long openTime;
+
+    /**
+     * 半开状态剩余可放行的请求数
+     */
+    private int halfOpenPermits;
+
+    private int halfOpenSuccess;
+
+    public CircuitBreaker(String name, ResilienceProperties properties) {
+        this.name = name;
+        this.window = new boolean[Math.max(properties.getWindowSize(), 1)];
+        this.minimumCalls = Math.min(Math.max(properties.getMinimumCalls(), 1), window.length);
+        this.failureRate = properties.getFailureRate();
+        this.openDuration = properties.getOpenDuration();
+        this.halfOpenCalls = Math.max(properties.getHalfOpenCalls(), 1);
+    }
+
+    /**
+     * 是否放行请求，放行后必须调用 onSuccess/onFailure/release 之一
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openTime < openDuration) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccess = 0;
+            log.info("存储熔断结束，开始探测：{}", name);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * 放行后未实际调用（如被限流拒绝）
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccess >= halfOpenCalls) {
+                state = State.CLOSED;
+                windowIndex = 0;
+                callCount = 0;
+                failureCount = 0;
+                log.info("存储已恢复：{}", name);
+            }
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (callCount >= minimumCalls && failureCount * 100 >= failureRate * callCount) {
+                open();
+            }
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    private void record(boolean failure) {
+        if (callCount == window.length) {
+            if (window[windowIndex]) {
+                failureCount--;
+            }
+        } else {
+            callCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openTime = System.currentTimeMillis();
+        log.warn("存储熔断：{}，{}ms后探测", name, openDuration);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.platform.common.upload.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 存储容错配置，每个存储独立熔断和限流
+ */
+@Data
+@ConfigurationProperties(prefix = "upload.resilience")
+public class ResilienceProperties {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+    /**
+     * 幂等操作（读取、删除、获取凭证）最多执行次数，含首次
+     */
+    private int maxAttempts = 3;
+    /**
+     * 重试退避基数（毫秒），每次翻倍，在 0~退避时间 内随机
+     */
+    private long backoff = 100;
+    /**
+     * 重试退避上限（毫秒）
+     */
+    private long maxBackoff = 2000;
+    /**
+     * 熔断统计的最近调用数
+     */
+    private int windowSize = 50;
+    /**
+     * 最少调用数，不足时不熔断
+     */
+    private int minimumCalls = 20;
+    /**
+     * 失败率（百分比）达到该值时熔断
+     */
+    private int failureRate = 50;
+    /**
+     * 熔断时间（毫秒），之后放行少量请求探测
+     */
+    private long openDuration = 30000;
+    /**
+     * 半开状态探测请求数，全部成功后恢复
+     */
+    private int halfOpenCalls = 5;
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 20;
+    /**
+     * 最小并发上限
+     */
+    private int minLimit = 4;
+    /**
+     * 最大并发上限
+     */
+    private int maxLimit = 200;
+    /**
+     * 慢调用或失败时并发上限的缩减比例
+     */
+    private double backoffRatio = 0.9;
+    /**
+     * 慢调用耗时（毫秒），上传按文件大小再加上 文件大小/minThroughput
+     */
+    private long slowCall = 3000;
+    /**
+     * 上传的最低速度（字节/秒），用于计算上传的慢调用耗时
+     */
+    private long minThroughput = 1048576;
+    /**
+     * 达到并发上限时的最长等待时间（毫秒），超时拒绝
+     */
+    private long acquireTimeout = 1000;
+    /**
+     * 是否启用对冲读取（范围读取在 hedgeDelay 内未返回时再发一次，取先返回的）
+     */
+    private boolean hedge;
+    /**
+     * 对冲读取延迟（毫秒）
+     */
+    private long hedgeDelay = 100;
+    /**
+     * 对冲读取的最大长度（字节），超过或未指定长度的读取不对冲
+     */
+    private long hedgeMaxSize = 1048576;
+    /**
+     * 对冲读取线程数（所有存储共用），线程用完时首次读取在调用线程执行、不再对冲
+     */
+    private int hedgeThreads = 16;
+
+}
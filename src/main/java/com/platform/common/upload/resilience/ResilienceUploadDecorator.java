@@ -0,0 +1,62 @@
+package com.platform.common.upload.resilience;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.platform.common.upload.decorator.UploadServiceDecorator;
+import com.platform.common.upload.service.UploadService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储容错，最靠近实际存储，每个存储独立熔断和限流（路由、副本模式下也装饰在各个存储上）
+ */
+@Component
+@EnableConfigurationProperties(ResilienceProperties.class)
+@ConditionalOnProperty(prefix = "upload.resilience", name = "enabled", havingValue = "true")
+public class ResilienceUploadDecorator implements UploadServiceDecorator {
+
+    private final ResilienceProperties properties;
+
+    private ExecutorService hedgeExecutor;
+
+    public ResilienceUploadDecorator(ResilienceProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public synchronized UploadService decorate(UploadService uploadService) {
+        if (properties.isHedge() && hedgeExecutor == null) {
+            // 有界，线程用完时拒绝，由调用方退回不对冲的读取
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getHedgeThreads()
+                    , properties.getHedgeThreads(), 60, TimeUnit.SECONDS, new SynchronousQueue<>()
+                    , new NamedThreadFactory("upload-hedge-", true), new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            hedgeExecutor = executor;
+        }
+        return new ResilientUploadService(uploadService, properties, hedgeExecutor);
+    }
+
+    @Override
+    public boolean isPerBackend() {
+        return true;
+    }
+
+    @Override
+    public int getOrder() {
+        return 10;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+package com.platform.common.upload.resilience;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.lang.Dict;
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.platform.common.upload.decorator.DelegatingUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qiniu.common.QiniuException;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 存储容错：熔断、自适应并发上限，幂等操作（读取、删除、获取凭证）遇到传输故障后随机退避重试，
+ * 小范围读取可对冲
+ * <p>
+ * 上传不重试：每次上传生成新的fileKey，且文件流不一定能重复读取
+ */
+@Slf4j
+public class ResilientUploadService extends DelegatingUploadService {
+
+    /**
+     * OSS服务端故障的错误码（5xx、限流）
+     */
+    private static final Set<String> OSS_TRANSIENT_CODES = CollUtil.newHashSet(OSSErrorCode.INTERNAL_ERROR
+            , OSSErrorCode.REQUEST_TIMEOUT, "ServiceUnavailable", "SlowDown");
+
+    private final ResilienceProperties properties;
+
+    /**
+     * 存储类型
+     */
+    private final String type;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    /**
+     * 对冲读取线程池，未启用对冲时为null
+     */
+    private final ExecutorService hedgeExecutor;
+
+    public ResilientUploadService(UploadService delegate, ResilienceProperties properties
+            , ExecutorService hedgeExecutor) {
+        super(delegate);
+        this.properties = properties;
+        this.type = delegate.getUploadType().getCode();
+        this.circuitBreaker = new CircuitBreaker(type, properties);
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(properties);
+        this.hedgeExecutor = hedgeExecutor;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    @Override
+    public Dict getFileToken() {
+        return retry(() -> call(-1, delegate::getFileToken));
+    }
+
+    @Override
+    public List<Dict> getFileTokens(int count) {
+        return retry(() -> call(-1, () -> delegate.getFileTokens(count)));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return call(file.getSize(), () -> delegate.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return call(file.length(), () -> delegate.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        return call(source.getLength(), () -> delegate.uploadFile(source));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        return call(file.getSize(), () -> delegate.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        return call(file.length(), () -> delegate.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        long size = fileList.stream().mapToLong(File::length).sum();
+        return call(size, () -> delegate.uploadFiles(fileList));
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        long size = fileList.stream().mapToLong(MultipartFile::getSize).sum();
+        return call(size, () -> delegate.uploadMultipartFiles(fileList));
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        return retry(() -> call(-1, () -> delegate.getInputStream(urlPath)));
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        Supplier<InputStream> action = () -> call(-1, () -> delegate.getInputStream(fileKey, offset, length));
+        if (hedgeExecutor != null && length >= 0 && length <= properties.getHedgeMaxSize()) {
+            return retry(() -> hedge(action));
+        }
+        return retry(action);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return retry(() -> call(-1, () -> delegate.delFile(dataList)));
+    }
+
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return retry(() -> call(-1, () -> delegate.delFiles(fileKeys)));
+    }
+
+    /**
+     * 经过熔断和并发上限执行
+     *
+     * @param size 上传大小，用于计算慢调用耗时，其他操作传-1
+     */
+    private <T> T call(long size, Supplier<T> action) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new RejectedException("存储暂不可用：" + type);
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            circuitBreaker.release();
+            throw new RejectedException("存储繁忙：" + type);
+        }
+        long startTime = System.currentTimeMillis();
+        boolean failed = true;
+        try {
+            T result = action.get();
+            failed = false;
+            return result;
+        } catch (RuntimeException e) {
+            failed = isTransient(e);
+            throw e;
+        } finally {
+            long slowCall = properties.getSlowCall();
+            if (size > 0) {
+                slowCall += size * 1000 / Math.max(properties.getMinThroughput(), 1);
+            }
+            concurrencyLimit.release(failed || System.currentTimeMillis() - startTime > slowCall);
+            if (failed) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+    }
+
+    /**
+     * 是否传输故障（网络异常、超时、存储5xx或429），按异常原因判断；文件不存在等存储正常返回的错误不计入熔断、不重试
+     * <p>
+     * 存储SDK的服务端异常按HTTP状态码判断，与获取url文件流时一致
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            int status = getStatus(cause);
+            if (status > 0) {
+                return status >= 500 || status == 429;
+            }
+            if (cause instanceof OSSException) {
+                // OSS异常没有状态码，按错误码判断
+                return OSS_TRANSIENT_CODES.contains(((OSSException) cause).getErrorCode());
+            }
+        }
+        if (ExceptionUtil.isCausedBy(e, FileNotFoundException.class, NoSuchFileException.class)) {
+            return false;
+        }
+        return ExceptionUtil.isCausedBy(e, IOException.class, TimeoutException.class);
+    }
+
+    /**
+     * 存储SDK服务端异常的HTTP状态码，不是服务端异常或没有响应时返回-1
+     */
+    private static int getStatus(Throwable e) {
+        if (e instanceof CosServiceException) {
+            return ((CosServiceException) e).getStatusCode();
+        }
+        if (e instanceof ErrorResponseException && ((ErrorResponseException) e).response() != null) {
+            return ((ErrorResponseException) e).response().code();
+        }
+        if (e instanceof ServerException) {
+            return ((ServerException) e).statusCode();
+        }
+        if (e instanceof QiniuException) {
+            return ((QiniuException) e).code();
+        }
+        return -1;
+    }
+
+    /**
+     * 传输故障后随机退避重试，熔断或限流拒绝、文件不存在等错误不重试
+     */
+    private <T> T retry(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RejectedException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (attempt >= properties.getMaxAttempts() || !isTransient(e)) {
+                    throw e;
+                }
+                long backoff = Math.min(properties.getMaxBackoff(), properties.getBackoff() << Math.min(attempt - 1, 20));
+                long sleep = ThreadLocalRandom.current().nextLong(Math.max(backoff, 0) + 1);
+                log.warn("存储调用失败，{}ms后第{}次重试：{}，{}", sleep, attempt, type, e.getMessage());
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 对冲读取：hedgeDelay 内未返回时再发一次，取先返回的文件流，另一个返回后关闭
+     * 对冲线程用完时首次读取在调用线程执行，不对冲；对冲请求无空闲线程时跳过
+     */
+    private InputStream hedge(Supplier<InputStream> action) {
+        HedgedRead hedgedRead = new HedgedRead(action);
+        if (!hedgedRead.start()) {
+            return action.get();
+        }
+        try {
+            try {
+                return hedgedRead.result.get(properties.getHedgeDelay(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                hedgedRead.startHedge();
+                return hedgedRead.result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("获取文件流失败");
+        }
+    }
+
+    /**
+     * 一次对冲读取
+     */
+    private class HedgedRead {
+
+        private final Supplier<InputStream> action;
+
+        private final CompletableFuture<InputStream> result = new CompletableFuture<>();
+
+        /**
+         * 执行中的请求数
+         */
+        private int running;
+
+        private HedgedRead(Supplier<InputStream> action) {
+            this.action = action;
+        }
+
+        /**
+         * 提交一次读取，没有空闲线程时返回false
+         */
+        private synchronized boolean start() {
+            try {
+                CompletableFuture.supplyAsync(action, hedgeExecutor).whenComplete(this::complete);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+
+        /**
+         * 首个请求已失败时不再对冲
+         */
+        private synchronized void startHedge() {
+            if (!result.isDone() && !circuitBreaker.isOpen() && !start()) {
+                log.debug("对冲线程已用完，不再对冲：{}", type);
+            }
+        }
+
+        private void complete(InputStream inputStream, Throwable e) {
+            if (e == null) {
+                if (!result.complete(inputStream)) {
+                    IOUtils.closeQuietly(inputStream);
+                }
+                return;
+            }
+            synchronized (this) {
+                if (--running == 0) {
+                    result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 熔断或限流拒绝
+     */
+    private static class RejectedException extends RuntimeException {
+
+        private RejectedException(String message) {
+            super(message);
+        }
+    }
+
+}
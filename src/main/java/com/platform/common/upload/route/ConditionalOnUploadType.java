@@ -0,0 +1,26 @@
+package com.platform.common.upload.route;
+
+import com.platform.common.upload.enums.UploadTypeEnum;
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 存储是否启用：upload.uploadType 为该存储，或开启路由后有规则指向该存储，或开启副本后为副本存储
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Documented
+@Conditional(OnUploadTypeCondition.class)
+public @interface ConditionalOnUploadType {
+
+    /**
+     * 存储类型
+     */
+    UploadTypeEnum value();
+
+}
@@ -0,0 +1,50 @@
+package com.platform.common.upload.route;
+
+import com.platform.common.upload.enums.UploadTypeEnum;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 判断存储是否启用
+ */
+class OnUploadTypeCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        UploadTypeEnum uploadType = (UploadTypeEnum) metadata
+                .getAnnotationAttributes(ConditionalOnUploadType.class.getName())
+                .get("value");
+        Environment environment = context.getEnvironment();
+        if (uploadType.getCode().equals(environment.getProperty("upload.uploadType"))) {
+            return ConditionOutcome.match("upload.uploadType=" + uploadType.getCode());
+        }
+        if (environment.getProperty("upload.replica.enabled", Boolean.class, false)) {
+            for (String type : environment.getProperty("upload.replica.types", "").split(",")) {
+                if (uploadType.getCode().equals(type.trim())) {
+                    return ConditionOutcome.match("upload.replica.types包含" + uploadType.getCode());
+                }
+            }
+        }
+        if (!environment.getProperty("upload.route.enabled", Boolean.class, false)) {
+            return ConditionOutcome.noMatch("upload.uploadType!=" + uploadType.getCode());
+        }
+        List<RouteRule> ruleList = Binder.get(environment)
+                .bind("upload.route.rules", Bindable.listOf(RouteRule.class))
+                .orElse(Collections.emptyList());
+        for (RouteRule rule : ruleList) {
+            if (uploadType == rule.getType()) {
+                return ConditionOutcome.match("upload.route.rules包含" + uploadType.getCode());
+            }
+        }
+        return ConditionOutcome.noMatch("未使用" + uploadType.getCode());
+    }
+
+}
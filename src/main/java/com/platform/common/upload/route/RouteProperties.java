@@ -0,0 +1,25 @@
+package com.platform.common.upload.route;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 存储路由配置
+ */
+@Data
+@ConfigurationProperties(prefix = "upload.route")
+public class RouteProperties {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+    /**
+     * 路由规则，按顺序匹配，都不命中时使用 upload.uploadType
+     */
+    private List<RouteRule> rules = new ArrayList<>();
+
+}
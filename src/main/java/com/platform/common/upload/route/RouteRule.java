@@ -0,0 +1,75 @@
+package com.platform.common.upload.route;
+
+import com.platform.common.upload.enums.UploadTypeEnum;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 路由规则，所有已配置的条件都满足时命中
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+public class RouteRule {
+
+    /**
+     * 目标存储
+     */
+    private UploadTypeEnum type;
+    /**
+     * 最小文件大小（字节，含）
+     */
+    private Long minSize;
+    /**
+     * 最大文件大小（字节，不含）
+     */
+    private Long maxSize;
+    /**
+     * 文件后缀（不含点，忽略大小写）
+     */
+    private List<String> extensions;
+    /**
+     * 文件类型，支持 image/* 通配
+     */
+    private List<String> contentTypes;
+
+    /**
+     * 是否命中
+     *
+     * @param size        文件大小，小于0表示未知
+     * @param extension   文件后缀
+     * @param contentType 文件类型
+     */
+    public boolean matches(long size, String extension, String contentType) {
+        if (minSize != null && (size < 0 || size < minSize)) {
+            return false;
+        }
+        if (maxSize != null && (size < 0 || size >= maxSize)) {
+            return false;
+        }
+        if (extensions != null && !extensions.isEmpty()) {
+            if (StringUtils.isEmpty(extension) || extensions.stream().noneMatch(extension::equalsIgnoreCase)) {
+                return false;
+            }
+        }
+        if (contentTypes != null && !contentTypes.isEmpty()) {
+            if (StringUtils.isEmpty(contentType)) {
+                return false;
+            }
+            String type = contentType.toLowerCase(Locale.ROOT);
+            return contentTypes.stream().anyMatch(pattern -> matchContentType(pattern.toLowerCase(Locale.ROOT), type));
+        }
+        return true;
+    }
+
+    private static boolean matchContentType(String pattern, String contentType) {
+        if (pattern.endsWith("/*")) {
+            return contentType.startsWith(pattern.substring(0, pattern.length() - 1));
+        }
+        return contentType.equals(pattern) || contentType.startsWith(pattern + ";");
+    }
+
+}
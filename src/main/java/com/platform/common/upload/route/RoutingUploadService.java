@@ -0,0 +1,305 @@
+package com.platform.common.upload.route;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.lang.Dict;
+import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.ThumbFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 多存储路由：按文件大小、后缀、类型选择存储，都不命中时使用 upload.uploadType
+ * <p>
+ * 所在存储记录在结果的 uploadType 中；默认存储的fileKey原样返回，
+ * 路由到其他存储的fileKey（包括缩略图）带存储前缀（如 minio:202401/01/08/xxx），任意节点读取和删除时按前缀找到存储，
+ * 不带前缀的fileKey（包括启用路由前上传的文件）使用默认存储
+ */
+@Slf4j
+@Primary
+@Service("routingUploadService")
+@EnableConfigurationProperties(RouteProperties.class)
+@ConditionalOnProperty(prefix = "upload.route", name = "enabled", havingValue = "true")
+public class RoutingUploadService implements UploadService {
+
+    /**
+     * 存储前缀分隔符
+     */
+    private static final char SEPARATOR = ':';
+
+    private final List<RouteRule> ruleList;
+
+    /**
+     * 存储编码 -> 存储
+     */
+    private final Map<String, UploadService> serviceMap = new LinkedHashMap<>();
+
+    /**
+     * 默认存储
+     */
+    private final UploadService defaultService;
+
+    public RoutingUploadService(@Value("${upload.uploadType}") String uploadType, RouteProperties routeProperties
+            , List<UploadService> serviceList) {
+        for (UploadService uploadService : serviceList) {
+            serviceMap.put(uploadService.getUploadType().getCode(), uploadService);
+        }
+        this.ruleList = routeProperties.getRules();
+        this.defaultService = getService(uploadType);
+        for (RouteRule rule : ruleList) {
+            getService(rule.getType().getCode());
+        }
+        log.info("存储路由已启用，默认存储：{}，规则{}条", uploadType, ruleList.size());
+    }
+
+    /**
+     * 带存储前缀的fileKey，按前缀直接找到存储
+     */
+    public static String getQualifiedKey(UploadTypeEnum uploadType, String fileKey) {
+        return uploadType.getCode() + SEPARATOR + fileKey;
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return defaultService.getUploadType();
+    }
+
+    @Override
+    public String getServerUrl() {
+        return defaultService.getServerUrl();
+    }
+
+    @Override
+    public Dict getFileToken() {
+        return defaultService.getFileToken();
+    }
+
+    @Override
+    public List<Dict> getFileTokens(int count) {
+        return defaultService.getFileTokens(count);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        UploadService uploadService = route(file);
+        return qualify(uploadService, uploadService.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        UploadService uploadService = route(file);
+        return qualify(uploadService, uploadService.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        UploadService uploadService = route(source.getLength(), source.getFileName(), source.getContentType());
+        return qualify(uploadService, uploadService.uploadFile(source));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        UploadService uploadService = route(file);
+        return qualify(uploadService, uploadService.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        UploadService uploadService = route(file);
+        return qualify(uploadService, uploadService.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        return batchUpload(fileList, this::route, UploadService::uploadFiles);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        return batchUpload(fileList, this::route, UploadService::uploadMultipartFiles);
+    }
+
+    /**
+     * 按地址前缀找到存储，都不匹配时使用默认存储
+     */
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        UploadService target = defaultService;
+        int matchLength = 0;
+        for (UploadService uploadService : serviceMap.values()) {
+            String serverUrl = uploadService.getServerUrl();
+            if (!StringUtils.isEmpty(serverUrl) && serverUrl.length() > matchLength && urlPath.startsWith(serverUrl)) {
+                target = uploadService;
+                matchLength = serverUrl.length();
+            }
+        }
+        return target.getInputStream(urlPath);
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        int index = getSeparatorIndex(fileKey);
+        String key = fileKey.substring(index + 1);
+        return getService(fileKey, index).getInputStream(key, offset, length);
+    }
+
+    @Override
+    public boolean delFile(File file) {
+        return defaultService.delFile(file);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    /**
+     * 按存储分组删除，按输入顺序返回，删除成功后移除路由索引
+     */
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        Map<UploadService, List<Integer>> groupMap = new LinkedHashMap<>();
+        List<String> keyList = new ArrayList<>(fileKeys.size());
+        for (int i = 0; i < fileKeys.size(); i++) {
+            String fileKey = fileKeys.get(i);
+            int index = getSeparatorIndex(fileKey);
+            UploadService uploadService = getService(fileKey, index);
+            keyList.add(fileKey.substring(index + 1));
+            groupMap.computeIfAbsent(uploadService, key -> new ArrayList<>()).add(i);
+        }
+        DeleteFileVo[] dataList = new DeleteFileVo[fileKeys.size()];
+        groupMap.forEach((uploadService, indexList) -> {
+            List<String> groupKeys = new ArrayList<>(indexList.size());
+            indexList.forEach(index -> groupKeys.add(keyList.get(index)));
+            List<DeleteFileVo> resultList = uploadService.delFiles(groupKeys);
+            for (int i = 0; i < indexList.size(); i++) {
+                int index = indexList.get(i);
+                dataList[index] = resultList.get(i).setFileKey(fileKeys.get(index));
+            }
+        });
+        return Arrays.asList(dataList);
+    }
+
+    /**
+     * 按存储分组上传，按输入顺序返回
+     */
+    private <T> List<UploadFileVo> batchUpload(List<T> fileList, Function<T, UploadService> router
+            , BiFunction<UploadService, List<T>, List<UploadFileVo>> uploader) {
+        Map<UploadService, List<Integer>> groupMap = new LinkedHashMap<>();
+        for (int i = 0; i < fileList.size(); i++) {
+            groupMap.computeIfAbsent(router.apply(fileList.get(i)), key -> new ArrayList<>()).add(i);
+        }
+        UploadFileVo[] dataList = new UploadFileVo[fileList.size()];
+        groupMap.forEach((uploadService, indexList) -> {
+            List<T> groupList = new ArrayList<>(indexList.size());
+            indexList.forEach(index -> groupList.add(fileList.get(index)));
+            List<UploadFileVo> resultList = uploader.apply(uploadService, groupList);
+            for (int i = 0; i < indexList.size(); i++) {
+                dataList[indexList.get(i)] = qualify(uploadService, resultList.get(i));
+            }
+        });
+        return Arrays.asList(dataList);
+    }
+
+    private UploadService route(MultipartFile file) {
+        String fileName = file.getOriginalFilename();
+        String contentType = file.getContentType();
+        if (StringUtils.isEmpty(contentType) && !StringUtils.isEmpty(fileName)) {
+            contentType = FileUtil.getMimeType(fileName);
+        }
+        return route(file.getSize(), fileName, contentType);
+    }
+
+    private UploadService route(File file) {
+        return route(file.length(), file.getName(), FileUtil.getMimeType(file.getName()));
+    }
+
+    /**
+     * 按顺序匹配规则
+     */
+    private UploadService route(long size, String fileName, String contentType) {
+        String extension = StringUtils.isEmpty(fileName) ? null : FileNameUtil.extName(fileName);
+        for (RouteRule rule : ruleList) {
+            if (rule.matches(size, extension, contentType)) {
+                return serviceMap.get(rule.getType().getCode());
+            }
+        }
+        return defaultService;
+    }
+
+    /**
+     * 记录存储类型，非默认存储的fileKey和缩略图fileKey加上存储前缀（复制一份，不修改下层可能缓存的对象）
+     */
+    private UploadFileVo qualify(UploadService uploadService, UploadFileVo fileVo) {
+        if (fileVo == null) {
+            return null;
+        }
+        UploadTypeEnum uploadType = uploadService.getUploadType();
+        UploadFileVo result = BeanUtil.copyProperties(fileVo, UploadFileVo.class).setUploadType(uploadType);
+        if (uploadService == defaultService) {
+            return result;
+        }
+        if (!StringUtils.isEmpty(fileVo.getFileKey())) {
+            result.setFileKey(getQualifiedKey(uploadType, fileVo.getFileKey()));
+        }
+        if (fileVo.getThumbs() != null) {
+            List<ThumbFileVo> thumbList = new ArrayList<>(fileVo.getThumbs().size());
+            for (ThumbFileVo thumb : fileVo.getThumbs()) {
+                thumbList.add(BeanUtil.copyProperties(thumb, ThumbFileVo.class)
+                        .setFileKey(getQualifiedKey(uploadType, thumb.getFileKey())));
+            }
+            result.setThumbs(thumbList);
+        }
+        return result;
+    }
+
+    /**
+     * fileKey所在的存储，不带前缀时使用默认存储
+     *
+     * @param index 存储前缀位置，不带前缀为-1
+     */
+    private UploadService getService(String fileKey, int index) {
+        return index < 0 ? defaultService : serviceMap.get(fileKey.substring(0, index));
+    }
+
+    /**
+     * 存储前缀位置，不带前缀返回-1
+     */
+    private int getSeparatorIndex(String fileKey) {
+        int index = fileKey.indexOf(SEPARATOR);
+        if (index > 0 && serviceMap.containsKey(fileKey.substring(0, index))) {
+            return index;
+        }
+        return -1;
+    }
+
+    private UploadService getService(String code) {
+        UploadService uploadService = serviceMap.get(code);
+        if (uploadService == null) {
+            throw new RuntimeException("存储未启用：" + code);
+        }
+        return uploadService;
+    }
+
+}
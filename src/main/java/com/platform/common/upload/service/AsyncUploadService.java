@@ -0,0 +1,60 @@
+package com.platform.common.upload.service;
+
+import com.platform.common.upload.async.DownloadReader;
+import com.platform.common.upload.async.UploadWriter;
+import com.platform.common.upload.vo.UploadFileVo;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步上传服务
+ */
+public interface AsyncUploadService {
+
+    /**
+     * 文件上传
+     * 注意：MultipartFile在请求结束后会被清理，需将返回的CompletableFuture作为控制器返回值（异步请求）
+     */
+    CompletableFuture<UploadFileVo> uploadFile(MultipartFile file);
+
+    /**
+     * 文件上传
+     */
+    CompletableFuture<UploadFileVo> uploadFile(File file);
+
+    /**
+     * 流式上传（只能读取一次的输入流），上传期间占用线程池中的一个线程
+     */
+    CompletableFuture<UploadFileVo> uploadFile(UploadSource source);
+
+    /**
+     * 分块写入上传（响应式请求体，如FilePart.content()），写入线程不阻塞，队列满时等待上传线程取走分块；
+     * 队列写满或写入结束后才占用线程池开始上传，同时进行的写入上传数有上限
+     *
+     * @param length 长度，未知时为-1
+     */
+    UploadWriter openUpload(String fileName, String contentType, long length);
+
+    /**
+     * 获取文件流
+     */
+    CompletableFuture<InputStream> getInputStream(String urlPath);
+
+    /**
+     * 按需分块读取文件（响应式响应体），每次读取在线程池中执行
+     *
+     * @param offset 起始位置
+     * @param length 读取长度，小于0表示读取到末尾
+     */
+    DownloadReader openDownload(String fileKey, long offset, long length, DataBufferFactory bufferFactory);
+
+    /**
+     * 删除文件
+     */
+    CompletableFuture<Boolean> delFile(List<String> dataList);
+}
@@ -0,0 +1,27 @@
+package com.platform.common.upload.service;
+
+import com.platform.common.upload.vo.UploadFileVo;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式上传服务
+ * 直接读取multipart请求体，每个文件边接收边写入存储，不经过MultipartFile的临时文件
+ * 注意：需关闭spring的multipart解析（spring.servlet.multipart.enabled: false），否则请求体已被读取
+ */
+public interface StreamUploadService {
+
+    /**
+     * 上传请求中的所有文件，按请求中的顺序返回，单个失败时对应结果success为false
+     */
+    List<UploadFileVo> uploadFiles(HttpServletRequest request);
+
+    /**
+     * 上传请求中的所有文件，按请求中的顺序返回，单个失败时对应结果success为false
+     *
+     * @param fieldMap 接收表单字段，需在文件之前使用的字段应放在文件之前
+     */
+    List<UploadFileVo> uploadFiles(HttpServletRequest request, Map<String, String> fieldMap);
+}
@@ -1,6 +1,8 @@
 package com.platform.common.upload.service;
 
 import cn.hutool.core.lang.Dict;
+import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,6 +15,11 @@ import java.util.List;
  */
 public interface UploadService {
 
+    /**
+     * 获取上传类型
+     */
+    UploadTypeEnum getUploadType();
+
     /**
      * 获取服务端域名
      */
@@ -23,6 +30,13 @@ public interface UploadService {
      */
     Dict getFileToken();
 
+    /**
+     * 批量获取上传凭证，同一时段内的凭证共用签名，每个凭证对应不同的文件
+     *
+     * @param count 凭证数量
+     */
+    List<Dict> getFileTokens(int count);
+
     /**
      * 文件上传
      */
@@ -33,11 +47,48 @@ public interface UploadService {
      */
     UploadFileVo uploadFile(File file);
 
+    /**
+     * 流式上传，按声明的长度直接写入存储；长度未知时分片上传，内存占用有上限
+     */
+    UploadFileVo uploadFile(UploadSource source);
+
+    /**
+     * 文件上传（断点续传）
+     *
+     * @param uploadId 调用方上传标识，失败后使用同一标识重试只上传缺失部分
+     */
+    UploadFileVo uploadFile(MultipartFile file, String uploadId);
+
+    /**
+     * 文件上传（断点续传）
+     *
+     * @param uploadId 调用方上传标识，失败后使用同一标识重试只上传缺失部分
+     */
+    UploadFileVo uploadFile(File file, String uploadId);
+
+    /**
+     * 批量上传，按输入顺序返回，单个失败时对应结果success为false
+     */
+    List<UploadFileVo> uploadFiles(List<File> fileList);
+
+    /**
+     * 批量上传，按输入顺序返回，单个失败时对应结果success为false
+     */
+    List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList);
+
     /**
      * 获取文件流
      */
     InputStream getInputStream(String urlPath);
 
+    /**
+     * 获取文件流（存储原生接口，支持范围读取）
+     *
+     * @param offset 起始位置
+     * @param length 读取长度，小于0表示读取到末尾
+     */
+    InputStream getInputStream(String fileKey, long offset, long length);
+
     /**
      * 删除本地文件
      */
@@ -47,4 +98,9 @@ public interface UploadService {
      * 删除本地文件
      */
     boolean delFile(List<String> dataList);
+
+    /**
+     * 批量删除，按存储单次请求上限分批并发执行，按输入顺序返回每个文件的结果
+     */
+    List<DeleteFileVo> delFiles(List<String> fileKeys);
 }
@@ -0,0 +1,103 @@
+package com.platform.common.upload.service;
+
+import cn.hutool.core.io.FileUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * 上传内容：文件名、准确的长度、类型和可重复打开的输入流
+ * <p>
+ * 存储按声明的长度流式上传，SDK不需要把整个流读入内存计算长度；长度未知的流按分片上传
+ */
+@Getter
+public class UploadSource implements InputStreamSource {
+
+    /**
+     * 文件名称
+     */
+    private final String fileName;
+    /**
+     * 文件类型，未知时为null（由存储按后缀判断）
+     */
+    private final String contentType;
+    /**
+     * 文件大小（字节）
+     */
+    private final long length;
+    /**
+     * 本地文件，不是本地文件时为null
+     */
+    private final Path path;
+    /**
+     * 是否可以重复读取
+     */
+    private final boolean repeatable;
+
+    @Getter(AccessLevel.NONE)
+    private final InputStreamSource source;
+
+    private UploadSource(String fileName, String contentType, long length, Path path, boolean repeatable
+            , InputStreamSource source) {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.length = length;
+        this.path = path;
+        this.repeatable = repeatable;
+        this.source = source;
+    }
+
+    public static UploadSource of(String fileName, MultipartFile file) {
+        return new UploadSource(fileName, file.getContentType(), file.getSize(), null, true, file);
+    }
+
+    public static UploadSource of(String fileName, File file) {
+        return of(fileName, file.toPath());
+    }
+
+    public static UploadSource of(String fileName, Path path) {
+        return new UploadSource(fileName, FileUtil.getMimeType(fileName), path.toFile().length(), path, true
+                , () -> Files.newInputStream(path));
+    }
+
+    /**
+     * 只能读取一次的输入流（如请求中的文件），由上传方关闭
+     *
+     * @param length 长度，未知时为-1
+     */
+    public static UploadSource of(String fileName, String contentType, long length, InputStream inputStream) {
+        AtomicBoolean opened = new AtomicBoolean();
+        return new UploadSource(fileName, contentType, length, null, false, () -> {
+            if (!opened.compareAndSet(false, true)) {
+                throw new IOException("输入流只能读取一次：" + fileName);
+            }
+            return inputStream;
+        });
+    }
+
+    /**
+     * 相同的内容，打开的输入流经过包装（如上传时同时分出数据）
+     */
+    public UploadSource wrap(UnaryOperator<InputStream> wrapper) {
+        return new UploadSource(fileName, contentType, length, path, repeatable
+                , () -> wrapper.apply(source.getInputStream()));
+    }
+
+    /**
+     * 打开输入流，由调用方关闭；只能读取一次的流再次打开时抛出异常
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return source.getInputStream();
+    }
+
+}
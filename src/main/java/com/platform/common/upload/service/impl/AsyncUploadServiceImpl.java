@@ -0,0 +1,195 @@
+package com.platform.common.upload.service.impl;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.platform.common.upload.async.DownloadReader;
+import com.platform.common.upload.async.UploadWriter;
+import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.service.AsyncUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步上传
+ * 每种存储使用独立的有界线程池，存储变慢时只会占满自身队列，不会拖垮请求线程
+ */
+@Slf4j
+@Service("asyncUploadService")
+@ConditionalOnProperty(prefix = "upload", name = "uploadType")
+public class AsyncUploadServiceImpl implements AsyncUploadService {
+
+    /**
+     * 线程数
+     */
+    @Value("${upload.async.threads:16}")
+    private int threads;
+    /**
+     * 队列长度
+     */
+    @Value("${upload.async.queueSize:512}")
+    private int queueSize;
+    /**
+     * 拒绝策略：abort（返回失败）、caller（由调用线程执行）
+     */
+    @Value("${upload.async.rejectPolicy:abort}")
+    private String rejectPolicy;
+    /**
+     * 分块读取的大小（字节）
+     */
+    @Value("${upload.async.chunkSize:65536}")
+    private int chunkSize;
+    /**
+     * 分块写入上传时每个上传最多缓存的分块数
+     */
+    @Value("${upload.async.writeBuffers:16}")
+    private int writeBuffers;
+    /**
+     * 同时进行的分块写入上传数，超过时直接失败，避免占满线程池
+     */
+    @Value("${upload.async.maxWriters:8}")
+    private int maxWriters;
+
+    @Autowired
+    private UploadService uploadService;
+
+    private final Map<UploadTypeEnum, ThreadPoolExecutor> executorMap = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的分块写入上传数
+     */
+    private final AtomicInteger writerCount = new AtomicInteger();
+
+    @PreDestroy
+    public void destroy() {
+        executorMap.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    @Override
+    public CompletableFuture<UploadFileVo> uploadFile(MultipartFile file) {
+        return submit(() -> uploadService.uploadFile(file));
+    }
+
+    @Override
+    public CompletableFuture<UploadFileVo> uploadFile(File file) {
+        return submit(() -> uploadService.uploadFile(file));
+    }
+
+    @Override
+    public CompletableFuture<UploadFileVo> uploadFile(UploadSource source) {
+        return submit(() -> uploadService.uploadFile(source));
+    }
+
+    /**
+     * 有数据可上传（队列写满、写入结束或出错）时才提交到线程池，写入方发送数据期间不占用线程；
+     * 进行中的写入上传超过上限或队列已满时直接失败，不由写入线程执行（写入线程执行会等待自身写入的分块）
+     */
+    @Override
+    public UploadWriter openUpload(String fileName, String contentType, long length) {
+        UploadWriter writer = new UploadWriter(writeBuffers);
+        CompletableFuture<UploadFileVo> result = writer.getResult();
+        if (writerCount.incrementAndGet() > maxWriters) {
+            writerCount.decrementAndGet();
+            log.warn("分块写入上传数已达上限：" + maxWriters);
+            writer.close(new RuntimeException("上传队列已满"));
+            result.completeExceptionally(new RuntimeException("上传队列已满"));
+            return writer;
+        }
+        result.whenComplete((data, e) -> writerCount.decrementAndGet());
+        UploadSource source = UploadSource.of(fileName, contentType, length, writer.getInputStream());
+        writer.getReady().thenRun(() -> {
+            try {
+                getExecutor(uploadService.getUploadType()).execute(() -> {
+                    try {
+                        result.complete(uploadService.uploadFile(source));
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        writer.close(new RuntimeException("文件上传失败"));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("上传队列已满：" + uploadService.getUploadType().getCode());
+                writer.close(new RuntimeException("上传队列已满"));
+                result.completeExceptionally(new RuntimeException("上传队列已满"));
+            }
+        });
+        return writer;
+    }
+
+    @Override
+    public CompletableFuture<InputStream> getInputStream(String urlPath) {
+        return submit(() -> uploadService.getInputStream(urlPath));
+    }
+
+    /**
+     * 队列已满时读取失败，不由读取线程执行
+     */
+    @Override
+    public DownloadReader openDownload(String fileKey, long offset, long length, DataBufferFactory bufferFactory) {
+        return new DownloadReader(() -> uploadService.getInputStream(fileKey, offset, length), bufferFactory
+                , chunkSize, getExecutor(uploadService.getUploadType()));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delFile(List<String> dataList) {
+        return submit(() -> uploadService.delFile(dataList));
+    }
+
+    /**
+     * 提交任务，队列已满时按拒绝策略处理
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, getExecutor(uploadService.getUploadType()));
+        } catch (RejectedExecutionException e) {
+            if ("caller".equals(rejectPolicy)) {
+                CompletableFuture<T> future = new CompletableFuture<>();
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+                return future;
+            }
+            log.warn("上传队列已满：" + uploadService.getUploadType().getCode());
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new RuntimeException("上传队列已满"));
+            return future;
+        }
+    }
+
+    /**
+     * 获取存储对应的线程池，队列已满时抛出RejectedExecutionException，由调用处按拒绝策略处理
+     */
+    private ThreadPoolExecutor getExecutor(UploadTypeEnum uploadType) {
+        return executorMap.computeIfAbsent(uploadType, type -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS
+                    , new ArrayBlockingQueue<>(queueSize)
+                    , new NamedThreadFactory("upload-async-" + type.getCode() + "-", true));
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+}
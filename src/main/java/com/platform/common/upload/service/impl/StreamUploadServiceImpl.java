@@ -0,0 +1,120 @@
+package com.platform.common.upload.service.impl;
+
+import com.platform.common.upload.service.StreamUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartRequest;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式上传
+ * 请求中的文件按顺序逐个写入存储，长度已知（分段带Content-Length）时直接上传，否则按分片上传，内存占用有上限
+ */
+@Slf4j
+@Service("streamUploadService")
+@ConditionalOnProperty(prefix = "upload", name = "uploadType")
+public class StreamUploadServiceImpl implements StreamUploadService {
+
+    /**
+     * 单个文件大小上限（字节，-1不限制）
+     */
+    @Value("${upload.stream.maxFileSize:-1}")
+    private long maxFileSize;
+    /**
+     * 请求大小上限（字节，-1不限制）
+     */
+    @Value("${upload.stream.maxRequestSize:-1}")
+    private long maxRequestSize;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Override
+    public List<UploadFileVo> uploadFiles(HttpServletRequest request) {
+        return uploadFiles(request, null);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(HttpServletRequest request, Map<String, String> fieldMap) {
+        if (WebUtils.getNativeRequest(request, MultipartRequest.class) != null) {
+            throw new RuntimeException("请求已被解析，请关闭spring.servlet.multipart.enabled");
+        }
+        if (!ServletFileUpload.isMultipartContent(request)) {
+            throw new RuntimeException("不是multipart请求");
+        }
+        ServletFileUpload fileUpload = new ServletFileUpload();
+        fileUpload.setFileSizeMax(maxFileSize);
+        fileUpload.setSizeMax(maxRequestSize);
+        fileUpload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+        List<UploadFileVo> dataList = new ArrayList<>();
+        try {
+            FileItemIterator iterator = fileUpload.getItemIterator(request);
+            while (iterator.hasNext()) {
+                FileItemStream item = iterator.next();
+                if (item.isFormField()) {
+                    if (fieldMap != null) {
+                        try (InputStream inputStream = item.openStream()) {
+                            fieldMap.put(item.getFieldName(), Streams.asString(inputStream, StandardCharsets.UTF_8.name()));
+                        }
+                    }
+                    continue;
+                }
+                // 未读完的部分由下一次hasNext跳过
+                dataList.add(upload(item));
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败", e);
+        }
+        return dataList;
+    }
+
+    /**
+     * 请求中的单个文件，失败不影响其他文件
+     */
+    private UploadFileVo upload(FileItemStream item) {
+        String fileName = item.getName();
+        try (InputStream inputStream = item.openStream()) {
+            UploadSource source = UploadSource.of(StringUtils.isEmpty(fileName) ? UploadBaseService.getFileName() : fileName
+                    , item.getContentType(), getContentLength(item), inputStream);
+            return uploadService.uploadFile(source).setSuccess(true);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return new UploadFileVo().setFileName(fileName).setSuccess(false).setErrorMsg(e.getMessage());
+        }
+    }
+
+    /**
+     * 分段声明的长度，未声明时为-1
+     */
+    private static long getContentLength(FileItemStream item) {
+        String contentLength = item.getHeaders() == null ? null : item.getHeaders().getHeader("Content-Length");
+        if (StringUtils.isEmpty(contentLength)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
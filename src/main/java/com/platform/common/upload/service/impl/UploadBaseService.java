@@ -2,31 +2,160 @@ package com.platform.common.upload.service.impl;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.lang.Dict;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.HexUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.platform.common.upload.integrity.ChecksumInputStream;
+import com.platform.common.upload.key.FileKeyStrategy;
+import com.platform.common.upload.multipart.MultipartCheckpoint;
+import com.platform.common.upload.multipart.MultipartUploadEngine;
+import com.platform.common.upload.multipart.MultipartUploadSupport;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * 基础上传
  */
 @Slf4j
-public class UploadBaseService {
+public abstract class UploadBaseService implements UploadService {
 
     protected static final String DEFAULT_DIR = FileNameUtil.UNIX_SEPARATOR + "file";
 
+    private static final int HTTP_PARTIAL = 206;
+
+    /**
+     * 单次获取凭证数量上限
+     */
+    private static final int MAX_TOKEN_COUNT = 1000;
+
+    /**
+     * 长度未知时预读的初始缓冲大小
+     */
+    private static final int PREFETCH_SIZE = 64 * 1024;
+
+    /**
+     * 连接池最大连接数
+     */
+    @Value("${upload.pool.maxConnections:1024}")
+    protected int maxConnections;
+    /**
+     * 连接池最大空闲连接数
+     */
+    @Value("${upload.pool.maxIdle:32}")
+    protected int maxIdle;
+    /**
+     * 空闲连接回收时间（毫秒）
+     */
+    @Value("${upload.pool.idleTimeout:60000}")
+    protected long idleTimeout;
+    /**
+     * 连接存活时间（毫秒），-1表示不限制
+     */
+    @Value("${upload.pool.keepAlive:-1}")
+    protected long keepAlive;
+    /**
+     * 建立连接超时时间（毫秒）
+     */
+    @Value("${upload.pool.connectTimeout:5000}")
+    protected int connectTimeout;
+    /**
+     * 读取超时时间（毫秒）
+     */
+    @Value("${upload.pool.readTimeout:60000}")
+    protected int readTimeout;
+    /**
+     * 上传凭证有效期（分钟）
+     */
+    @Value("${upload.token.expire:30}")
+    protected long tokenExpire;
+    /**
+     * 上传凭证复用时长（分钟），该时段内的请求共用同一份签名
+     */
+    @Value("${upload.token.reuse:10}")
+    protected long tokenReuse;
+    /**
+     * 上传时计算MD5/CRC64/SHA-256并与存储返回的值比对
+     */
+    @Value("${upload.integrity.enabled:false}")
+    protected boolean integrity;
+
+    /**
+     * 分片上传引擎
+     */
+    @Autowired
+    protected MultipartUploadEngine multipartUploadEngine;
+
+    /**
+     * 文件名生成策略
+     */
+    @Autowired
+    protected FileKeyStrategy fileKeyStrategy;
+
+    @Autowired
+    protected Environment environment;
+
+    /**
+     * 批量上传线程池（按需创建）
+     */
+    private volatile ExecutorService batchExecutor;
+
+    /**
+     * 下载连接池（按需创建）
+     */
+    private volatile OkHttpClient httpClient;
+
+    @PreDestroy
+    public void destroyBase() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
     /**
      * 获取文件名称
      */
@@ -49,6 +178,76 @@ public class UploadBaseService {
         return fileName;
     }
 
+    /**
+     * 上传内容（带文件大小和类型）
+     */
+    protected static UploadSource getSource(MultipartFile file) {
+        return UploadSource.of(getFileName(file), file);
+    }
+
+    /**
+     * 上传内容（带文件大小和类型）
+     */
+    protected static UploadSource getSource(File file) {
+        return UploadSource.of(getFileName(file), file);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        UploadSource data;
+        try {
+            data = prefetch(source);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败", e);
+        }
+        return upload(data);
+    }
+
+    /**
+     * 按上传内容上传到存储
+     */
+    protected abstract UploadFileVo upload(UploadSource source);
+
+    /**
+     * 长度未知的流先读取一个分片：读完时按内存中的内容上传（长度已知），否则拼接剩余部分按分片上传
+     * <p>
+     * 缓冲按读到的数据翻倍增长，小文件不会分配整个分片的内存
+     */
+    protected UploadSource prefetch(UploadSource source) throws IOException {
+        if (source.getLength() >= 0) {
+            return source;
+        }
+        int partSize = multipartUploadEngine.getPartSize();
+        InputStream inputStream = source.getInputStream();
+        byte[] buffer = new byte[Math.min(PREFETCH_SIZE, partSize)];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                if (length == partSize) {
+                    // 读满一个分片，剩余部分按分片上传
+                    return UploadSource.of(source.getFileName(), source.getContentType(), -1
+                            , new SequenceInputStream(new ByteArrayInputStream(buffer), inputStream));
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min((long) length * 2, partSize));
+            }
+            int count = inputStream.read(buffer, length, buffer.length - length);
+            if (count == -1) {
+                inputStream.close();
+                return UploadSource.of(source.getFileName(), source.getContentType(), length
+                        , new ByteArrayInputStream(buffer, 0, length));
+            }
+            length += count;
+        }
+    }
+
+    /**
+     * 是否分片上传（长度未知即预读已读满一个分片时分片上传）
+     */
+    protected boolean isMultipart(UploadSource source) {
+        return source.getLength() < 0 || multipartUploadEngine.isMultipart(source.getLength());
+    }
+
     /**
      * 获取文件名称
      */
@@ -59,7 +258,7 @@ public class UploadBaseService {
     /**
      * 获取文件全名
      */
-    protected static String getFileKey(String prefix) {
+    protected String getFileKey(String prefix) {
         String fileName = getFileName();
         return getFileKey(prefix, fileName);
     }
@@ -67,44 +266,313 @@ public class UploadBaseService {
     /**
      * 获取文件全名
      */
-    protected static String getFileKey(String prefix, String fileName) {
-        // 获取当前UTC时间并转换为东8区时间
-        ZonedDateTime zonedDateTime = ZonedDateTime.now(ZoneId.of("Asia/Shanghai"));
-        DateTimeFormatter yearMonthFormatter = DateTimeFormatter.ofPattern("yyyyMM");
-        DateTimeFormatter dayFormatter = DateTimeFormatter.ofPattern("dd");
-        DateTimeFormatter hourFormatter = DateTimeFormatter.ofPattern("HH");
+    protected String getFileKey(String prefix, String fileName) {
+        return fileKeyStrategy.getFileKey(prefix, fileName);
+    }
 
-        StringBuilder builder = new StringBuilder();
-        if (!StringUtils.isEmpty(prefix)) {
-            builder.append(prefix);
-            builder.append(FileNameUtil.UNIX_SEPARATOR);
+    @Override
+    public List<Dict> getFileTokens(int count) {
+        if (count > MAX_TOKEN_COUNT) {
+            throw new RuntimeException("单次获取凭证数量不能超过" + MAX_TOKEN_COUNT);
+        }
+        List<Dict> dataList = new ArrayList<>(Math.max(count, 0));
+        for (int i = 0; i < count; i++) {
+            dataList.add(getFileToken());
         }
-        builder.append(zonedDateTime.format(yearMonthFormatter))
-                .append(FileNameUtil.UNIX_SEPARATOR)
-                .append(zonedDateTime.format(dayFormatter))
-                .append(FileNameUtil.UNIX_SEPARATOR)
-                .append(zonedDateTime.format(hourFormatter))
-                .append(FileNameUtil.UNIX_SEPARATOR);
-        return builder.toString() + fileName;
+        return dataList;
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        return batchUpload(fileList, this::uploadFile, UploadBaseService::getFileName);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        return batchUpload(fileList, this::uploadFile, UploadBaseService::getFileName);
+    }
+
+    /**
+     * 并发上传，按输入顺序返回结果，单个文件失败不影响其他文件
+     */
+    protected <T> List<UploadFileVo> batchUpload(List<T> fileList, Function<T, UploadFileVo> uploader
+            , Function<T, String> fileNameGetter) {
+        ExecutorService executor = getBatchExecutor();
+        List<Future<UploadFileVo>> futureList = new ArrayList<>(fileList.size());
+        for (T file : fileList) {
+            futureList.add(executor.submit(() -> uploader.apply(file).setSuccess(true)));
+        }
+        List<UploadFileVo> dataList = new ArrayList<>(fileList.size());
+        for (int i = 0; i < futureList.size(); i++) {
+            try {
+                dataList.add(futureList.get(i).get());
+            } catch (Exception e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.error(cause.getMessage(), cause);
+                dataList.add(new UploadFileVo()
+                        .setFileName(fileNameGetter.apply(fileList.get(i)))
+                        .setSuccess(false)
+                        .setErrorMsg(cause.getMessage()));
+            }
+        }
+        return dataList;
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    /**
+     * 分批并发删除，按输入顺序返回结果，单批失败时该批文件均标记为失败
+     *
+     * @param chunkSize 每批数量（存储单次请求上限）
+     * @param deleter   删除一批文件，返回其中失败的文件及原因
+     */
+    protected List<DeleteFileVo> batchDelete(List<String> fileKeys, int chunkSize, ChunkDeleter deleter) {
+        ExecutorService executor = getBatchExecutor();
+        List<List<String>> chunkList = new ArrayList<>();
+        for (int i = 0; i < fileKeys.size(); i += chunkSize) {
+            chunkList.add(fileKeys.subList(i, Math.min(i + chunkSize, fileKeys.size())));
+        }
+        List<Future<Map<String, String>>> futureList = new ArrayList<>(chunkList.size());
+        for (List<String> chunk : chunkList) {
+            if (chunkList.size() == 1) {
+                // 只有一批时在当前线程删除，批量上传的线程中删除（如校验失败）不会等待自身所在的线程池
+                FutureTask<Map<String, String>> task = new FutureTask<>(() -> deleter.delete(chunk));
+                task.run();
+                futureList.add(task);
+            } else {
+                futureList.add(executor.submit(() -> deleter.delete(chunk)));
+            }
+        }
+        List<DeleteFileVo> dataList = new ArrayList<>(fileKeys.size());
+        for (int i = 0; i < futureList.size(); i++) {
+            List<String> chunk = chunkList.get(i);
+            try {
+                Map<String, String> errorMap = futureList.get(i).get();
+                for (String fileKey : chunk) {
+                    String errorMsg = errorMap.get(fileKey);
+                    dataList.add(new DeleteFileVo()
+                            .setFileKey(fileKey)
+                            .setSuccess(errorMsg == null)
+                            .setErrorMsg(errorMsg));
+                }
+            } catch (Exception e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.error(cause.getMessage(), cause);
+                for (String fileKey : chunk) {
+                    dataList.add(new DeleteFileVo()
+                            .setFileKey(fileKey)
+                            .setSuccess(false)
+                            .setErrorMsg(cause.getMessage()));
+                }
+            }
+        }
+        return dataList;
+    }
+
+    /**
+     * 批量删除
+     */
+    @FunctionalInterface
+    protected interface ChunkDeleter {
+
+        /**
+         * 删除一批文件
+         *
+         * @return 删除失败的文件及原因，全部成功返回空集合
+         */
+        Map<String, String> delete(List<String> fileKeys) throws Exception;
+    }
+
+    /**
+     * 批量上传线程池，并发数可按存储单独配置：upload.batch.{uploadType}.parallelism
+     * 队列已满时由提交线程执行
+     */
+    private ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            synchronized (this) {
+                if (batchExecutor == null) {
+                    String code = getUploadType().getCode();
+                    int parallelism = environment.getProperty("upload.batch." + code + ".parallelism", Integer.class
+                            , environment.getProperty("upload.batch.parallelism", Integer.class, 8));
+                    int queueSize = environment.getProperty("upload.batch.queueSize", Integer.class, 1024);
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS
+                            , new ArrayBlockingQueue<>(queueSize)
+                            , new NamedThreadFactory("upload-batch-" + code + "-", true)
+                            , new ThreadPoolExecutor.CallerRunsPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    batchExecutor = executor;
+                }
+            }
+        }
+        return batchExecutor;
     }
 
     /**
      * 获取文件流
      */
+    @Override
     public InputStream getInputStream(String urlPath) {
+        return getUrlInputStream(urlPath, 0, -1);
+    }
+
+    /**
+     * 通过http获取文件流（连接池），支持范围读取
+     *
+     * @param length 读取长度，小于0表示读取到末尾
+     */
+    protected InputStream getUrlInputStream(String urlPath, long offset, long length) {
+        Request.Builder builder = new Request.Builder().url(urlPath);
+        boolean ranged = offset > 0 || length >= 0;
+        if (ranged) {
+            builder.header("Range", "bytes=" + offset + "-" + (length >= 0 ? offset + length - 1 : ""));
+        }
+        Response response = null;
+        try {
+            response = getHttpClient().newCall(builder.build()).execute();
+            if (!response.isSuccessful()) {
+                // 4xx（如文件不存在）不是传输故障，不计入熔断、不重试
+                String message = "HTTP " + response.code() + "：" + urlPath;
+                throw response.code() >= 500 || response.code() == 429 ? new IOException(message)
+                        : new FileNotFoundException(message);
+            }
+            InputStream inputStream = response.body().byteStream();
+            if (ranged && response.code() != HTTP_PARTIAL) {
+                // 服务端不支持范围读取，本地截取
+                IOUtils.skipFully(inputStream, offset);
+                if (length >= 0) {
+                    inputStream = new BoundedInputStream(inputStream, length);
+                }
+            }
+            return inputStream;
+        } catch (Exception e) {
+            if (response != null) {
+                response.close();
+            }
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败", e);
+        }
+    }
+
+    /**
+     * 下载连接池（按需创建）
+     */
+    private OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            synchronized (this) {
+                if (httpClient == null) {
+                    httpClient = new OkHttpClient.Builder()
+                            .connectionPool(new ConnectionPool(maxIdle, idleTimeout, TimeUnit.MILLISECONDS))
+                            .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                            .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                            .build();
+                }
+            }
+        }
+        return httpClient;
+    }
+
+    /**
+     * 从文件地址解析文件全名，不属于该地址时返回null
+     */
+    protected static String parseFileKey(String urlPath, String baseUrl) {
+        String prefix = baseUrl + FileNameUtil.UNIX_SEPARATOR;
+        if (urlPath == null || !urlPath.startsWith(prefix)) {
+            return null;
+        }
+        String fileKey = urlPath.substring(prefix.length());
+        int index = fileKey.indexOf('?');
+        return index == -1 ? fileKey : fileKey.substring(0, index);
+    }
+
+    /**
+     * 断点续传（已完成的任务直接返回时不记录校验值）
+     */
+    protected UploadFileVo resumeUpload(MultipartUploadSupport support, String uploadId, String fileKey
+            , UploadSource source, String serverUrl) {
         try {
-            URL url = new URL(urlPath);
-            HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
-            // 设置网络连接超时时间
-            httpURLConnection.setConnectTimeout(5000);
-            // 设置应用程序要从网络连接读取数据
-            httpURLConnection.setDoInput(true);
-            // 从服务器返回一个输入流
-            return httpURLConnection.getInputStream();
+            AtomicReference<InputStream> streamRef = new AtomicReference<>();
+            MultipartCheckpoint checkpoint = multipartUploadEngine.upload(support, uploadId, source.getFileName(), fileKey
+                    , source.getLength(), () -> {
+                InputStream inputStream = checksum(source.getInputStream());
+                streamRef.set(inputStream);
+                return inputStream;
+            });
+            UploadFileVo fileVo = format(checkpoint.getFileName(), serverUrl, checkpoint.getFileKey());
+            return streamRef.get() == null ? fileVo : verify(fileVo, streamRef.get(), null, null);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("获取文件流失败");
+            throw new RuntimeException("文件上传失败", e);
+        }
+    }
+
+    /**
+     * 启用校验时包装为边读边计算校验值的输入流
+     */
+    protected InputStream checksum(InputStream inputStream) {
+        return checksum(inputStream, false);
+    }
+
+    /**
+     * 启用校验时包装为边读边计算校验值的输入流
+     *
+     * @param qetag 是否计算七牛qetag
+     */
+    protected InputStream checksum(InputStream inputStream, boolean qetag) {
+        return integrity ? new ChecksumInputStream(inputStream, qetag) : inputStream;
+    }
+
+    /**
+     * 比对存储返回的校验值并记录到上传结果，不一致时删除已上传的文件
+     *
+     * @param inputStream 上传时读取的输入流（未经checksum包装时不处理）
+     * @param etag        存储返回的ETag，计算了qetag时按qetag比对，否则为32位16进制时按MD5比对，为null不比对
+     * @param crc64       存储返回的CRC64（无符号十进制），为null不比对
+     */
+    protected UploadFileVo verify(UploadFileVo fileVo, InputStream inputStream, String etag, String crc64) {
+        if (!(inputStream instanceof ChecksumInputStream)) {
+            return fileVo;
+        }
+        ChecksumInputStream checksum = (ChecksumInputStream) inputStream;
+        String expected = null;
+        String actual = null;
+        if (etag != null) {
+            String value = etag.replace("\"", "");
+            if (checksum.getQetag() != null) {
+                expected = checksum.getQetag();
+                actual = value;
+            } else if (value.length() == 32 && HexUtil.isHexNumber("0x" + value)) {
+                expected = checksum.getMd5();
+                actual = value.toLowerCase();
+            }
+        }
+        // ETag一致（或未比对）时再比对CRC64
+        if (crc64 != null && (expected == null || expected.equals(actual))) {
+            expected = checksum.getCrc64();
+            actual = crc64;
+        }
+        if (expected != null && !expected.equals(actual)) {
+            try {
+                delFiles(Collections.singletonList(fileVo.getFileKey()));
+            } catch (Exception e) {
+                log.error("校验失败的文件删除失败：" + fileVo.getFileKey(), e);
+            }
+            throw new IllegalStateException("文件校验失败：" + fileVo.getFileKey() + "，本地" + expected + "，存储" + actual);
         }
+        return fileVo.setMd5(checksum.getMd5())
+                .setCrc64(checksum.getCrc64())
+                .setSha256(checksum.getSha256());
+    }
+
+    /**
+     * 分片内容的MD5
+     */
+    protected static byte[] md5(byte[] data, int length) {
+        MessageDigest digest = DigestUtil.digester(DigestAlgorithm.MD5).getDigest();
+        digest.update(data, 0, length);
+        return digest.digest();
     }
 
     /**
@@ -1,32 +1,46 @@
 package com.platform.common.upload.service.impl;
 
-import cn.hutool.core.date.DateField;
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import com.platform.common.upload.credential.CosPresigner;
 import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.multipart.MultipartUploadSupport;
+import com.platform.common.upload.multipart.UploadPart;
+import com.platform.common.upload.route.ConditionalOnUploadType;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import com.qcloud.cos.COSClient;
 import com.qcloud.cos.auth.BasicCOSCredentials;
-import com.qcloud.cos.http.HttpMethodName;
+import com.qcloud.cos.exception.MultiObjectDeleteException;
+import com.qcloud.cos.model.AbortMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
 import com.qcloud.cos.model.DeleteObjectsRequest;
+import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.InitiateMultipartUploadRequest;
 import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PartETag;
 import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.UploadPartRequest;
 import com.qcloud.cos.region.Region;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
-import java.net.URL;
-import java.util.Date;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 腾讯云上传
@@ -34,46 +48,82 @@ import java.util.List;
 @Slf4j
 @Service("uploadCosService")
 @Configuration
-@ConditionalOnProperty(prefix = "upload", name = "uploadType", havingValue = "cos")
-public class UploadCosServiceImpl extends UploadBaseService implements UploadService {
+@ConditionalOnUploadType(UploadTypeEnum.COS)
+public class UploadCosServiceImpl extends UploadBaseService implements UploadService, MultipartUploadSupport {
+
+    /**
+     * 单次批量删除上限
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
 
     /**
      * 服务端域名
      */
-    @Value("${upload.serverUrl}")
+    @Value("${upload.cos.serverUrl:${upload.serverUrl:}}")
     private String serverUrl;
     /**
      * accessKey
      */
-    @Value("${upload.accessKey}")
+    @Value("${upload.cos.accessKey:${upload.accessKey:}}")
     private String accessKey;
     /**
      * secretKey
      */
-    @Value("${upload.secretKey}")
+    @Value("${upload.cos.secretKey:${upload.secretKey:}}")
     private String secretKey;
     /**
      * bucket
      */
-    @Value("${upload.bucket}")
+    @Value("${upload.cos.bucket:${upload.bucket:}}")
     private String bucket;
     /**
      * prefix
      */
-    @Value("${upload.prefix}")
+    @Value("${upload.cos.prefix:${upload.prefix:}}")
     private String prefix;
     /**
      * region
      */
-    @Value("${upload.region}")
+    @Value("${upload.cos.region:${upload.region:}}")
     private String region;
 
+    /**
+     * cos客户端（单例，随容器销毁）
+     */
+    private COSClient client;
+
+    /**
+     * 预签名
+     */
+    private CosPresigner presigner;
+
     /**
      * 初始化cos
      */
-    private COSClient initCOS() {
-        return new COSClient(new BasicCOSCredentials(accessKey, secretKey),
-                new com.qcloud.cos.ClientConfig(new Region(region)));
+    @PostConstruct
+    public void initCOS() {
+        // 空闲连接由sdk内置的回收线程处理
+        com.qcloud.cos.ClientConfig clientConfig = new com.qcloud.cos.ClientConfig(new Region(region));
+        clientConfig.setMaxConnectionsCount(maxConnections);
+        clientConfig.setConnectionTimeout(connectTimeout);
+        clientConfig.setSocketTimeout(readTimeout);
+        this.client = new COSClient(new BasicCOSCredentials(accessKey, secretKey), clientConfig);
+        this.presigner = new CosPresigner(accessKey, secretKey, bucket, region, tokenExpire, tokenReuse);
+    }
+
+    /**
+     * 关闭cos
+     */
+    @PreDestroy
+    public void destroyCOS() {
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return UploadTypeEnum.COS;
     }
 
     @Override
@@ -85,23 +135,8 @@ public class UploadCosServiceImpl extends UploadBaseService implements UploadSer
     public Dict getFileToken() {
         String fileName = getFileName();
         String fileKey = getFileKey(prefix, fileName);
-        String fileHost;
-        COSClient client = null;
-        try {
-            client = initCOS();
-            // 这里设置签名在半个小时后过期
-            Date expired = DateUtil.offset(DateUtil.date(), DateField.MINUTE, 30);
-            // 生成预览URL地址
-            URL url = client.generatePresignedUrl(bucket, fileKey, expired, HttpMethodName.PUT);
-            fileHost = url.toString();
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
-            }
-        }
+        // 本地签名，SignKey按时间窗口复用
+        String fileHost = presigner.presignPut(fileKey);
         return Dict.create()
                 .set("uploadType", UploadTypeEnum.COS)
                 .set("serverUrl", fileHost)
@@ -110,71 +145,131 @@ public class UploadCosServiceImpl extends UploadBaseService implements UploadSer
 
     @Override
     public UploadFileVo uploadFile(MultipartFile file) {
-        String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
-        // 3 生成 cos 客户端。
-        COSClient client = null;
-        try {
-            client = initCOS();
+        return upload(getSource(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return upload(getSource(file));
+    }
+
+    /**
+     * 大文件分片上传，否则按声明的长度流式上传并比对ETag和CRC64
+     */
+    @Override
+    protected UploadFileVo upload(UploadSource source) {
+        String fileName = source.getFileName();
+        String fileKey = appendFileExtension(fileName, getFileKey(prefix));
+        try (InputStream inputStream = checksum(source.getInputStream())) {
+            if (isMultipart(source)) {
+                multipartUploadEngine.upload(this, fileKey, inputStream);
+                return verify(format(fileName, serverUrl, fileKey), inputStream, null, null);
+            }
+            // 未设置长度时sdk会把整个流读入内存
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(source.getLength());
+            if (source.getContentType() != null) {
+                metadata.setContentType(source.getContentType());
+            }
             //上传到腾讯云
             PutObjectRequest putObjectRequest = new PutObjectRequest(bucket
-                    , fileKey, file.getInputStream(), new ObjectMetadata());
-            client.putObject(putObjectRequest);
-            return format(fileName, serverUrl, fileKey);
+                    , fileKey, inputStream, metadata);
+            PutObjectResult result = client.putObject(putObjectRequest);
+            Object crc64 = result.getMetadata() == null ? null
+                    : result.getMetadata().getRawMetadataValue("x-cos-hash-crc64ecma");
+            return verify(format(fileName, serverUrl, fileKey), inputStream, result.getETag()
+                    , crc64 == null ? null : crc64.toString());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
-            }
+            throw new RuntimeException("文件上传失败", e);
         }
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
-        InputStream inputStream = FileUtil.getInputStream(file);
-        // 3 生成 cos 客户端。
-        COSClient client = null;
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl);
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        String fileKey = parseFileKey(urlPath, serverUrl);
+        return fileKey == null ? super.getInputStream(urlPath) : getInputStream(fileKey, 0, -1);
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
         try {
-            client = initCOS();
-            //上传到腾讯云
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucket
-                    , fileKey, inputStream, new ObjectMetadata());
-            client.putObject(putObjectRequest);
-            return format(fileName, serverUrl, fileKey);
+            GetObjectRequest request = new GetObjectRequest(bucket, fileKey);
+            if (offset > 0 || length >= 0) {
+                // 结束位置超出文件大小时按文件末尾处理
+                request.setRange(offset, length >= 0 ? offset + length - 1 : Long.MAX_VALUE - 1);
+            }
+            return client.getObject(request).getObjectContent();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
-            }
+            throw new RuntimeException("获取文件流失败", e);
         }
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        COSClient client = null;
-        try {
-            client = initCOS();
-            // 生成预览URL地址
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return batchDelete(fileKeys, DELETE_BATCH_SIZE, chunk -> {
             DeleteObjectsRequest deleteObjectRequest = new DeleteObjectsRequest(bucket);
-            deleteObjectRequest.withKeys(dataList.toArray(new String[0]));
-            client.deleteObjects(deleteObjectRequest);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (client != null) {
-                client.shutdown();
+            deleteObjectRequest.withKeys(chunk.toArray(new String[0]));
+            deleteObjectRequest.setQuiet(true);
+            Map<String, String> errorMap = new HashMap<>();
+            try {
+                client.deleteObjects(deleteObjectRequest);
+            } catch (MultiObjectDeleteException e) {
+                // 部分失败
+                e.getErrors().forEach(error -> errorMap.put(error.getKey(), error.getMessage()));
             }
+            return errorMap;
+        });
+    }
+
+    @Override
+    public String initiateMultipartUpload(String fileKey) {
+        return client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, fileKey))
+                .getUploadId();
+    }
+
+    @Override
+    public String uploadPart(String fileKey, String uploadId, int partNumber, byte[] data, int length) {
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(fileKey)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withInputStream(new ByteArrayInputStream(data, 0, length))
+                .withPartSize(length);
+        if (integrity) {
+            // 服务端按Content-MD5校验分片
+            request.setMd5Digest(Base64.getEncoder().encodeToString(md5(data, length)));
         }
-        return false;
+        return client.uploadPart(request).getETag();
+    }
+
+    @Override
+    public void completeMultipartUpload(String fileKey, String uploadId, List<UploadPart> partList) {
+        List<PartETag> partETags = partList.stream()
+                .map(part -> new PartETag(part.getPartNumber(), part.getEtag()))
+                .collect(Collectors.toList());
+        client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, fileKey, uploadId, partETags));
+    }
+
+    @Override
+    public void abortMultipartUpload(String fileKey, String uploadId) {
+        client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, fileKey, uploadId));
     }
 
 }
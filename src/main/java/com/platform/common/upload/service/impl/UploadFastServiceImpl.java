@@ -1,21 +1,41 @@
 package com.platform.common.upload.service.impl;
 
 import cn.hutool.core.lang.Dict;
+import com.github.tobato.fastdfs.domain.conn.Connection;
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionPool;
 import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.domain.proto.storage.FdfsInputStream;
+import com.github.tobato.fastdfs.domain.proto.storage.StorageDownloadCommand;
+import com.github.tobato.fastdfs.exception.FdfsServerException;
+import com.github.tobato.fastdfs.service.AppendFileStorageClient;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.github.tobato.fastdfs.service.TrackerClient;
 import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.route.ConditionalOnUploadType;
 import com.platform.common.upload.service.UploadService;
-import com.platform.common.upload.utils.FastUtils;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * fast上传
@@ -24,15 +44,55 @@ import java.util.List;
 @Service("uploadFastService")
 @Configuration
 @NoArgsConstructor
-@ConditionalOnProperty(prefix = "upload", name = "uploadType", havingValue = "fast")
+@ConditionalOnUploadType(UploadTypeEnum.FAST)
 public class UploadFastServiceImpl extends UploadBaseService implements UploadService {
 
+    /**
+     * 每批删除数量（storage没有批量删除接口，每批较小以便多批并发）
+     */
+    private static final int DELETE_BATCH_SIZE = 10;
+
+    /**
+     * 文件不存在（storage返回的错误码）
+     */
+    private static final int ERROR_NOT_FOUND = 2;
+
     /**
      * 服务端域名
      */
-    @Value("${upload.serverUrl}")
+    @Value("${upload.fast.serverUrl:${upload.serverUrl:}}")
     private String serverUrl;
 
+    @Autowired
+    private FastFileStorageClient fastFileStorageClient;
+
+    @Autowired
+    private AppendFileStorageClient appendFileStorageClient;
+
+    @Autowired
+    private FdfsConnectionPool connectionPool;
+
+    @Autowired
+    private TrackerClient trackerClient;
+
+    /**
+     * 批量上传、删除并发使用同一个storage的连接，连接数不足时等待连接池
+     */
+    @PostConstruct
+    public void init() {
+        int parallelism = environment.getProperty("upload.batch.fast.parallelism", Integer.class
+                , environment.getProperty("upload.batch.parallelism", Integer.class, 8));
+        int maxTotalPerKey = connectionPool.getMaxTotalPerKey();
+        if (maxTotalPerKey >= 0 && maxTotalPerKey < parallelism) {
+            log.warn("fdfs.pool.max-total-per-key（{}）小于批量并发数（{}），批量上传将等待连接", maxTotalPerKey, parallelism);
+        }
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return UploadTypeEnum.FAST;
+    }
+
     @Override
     public String getServerUrl() {
         return serverUrl;
@@ -41,40 +101,162 @@ public class UploadFastServiceImpl extends UploadBaseService implements UploadSe
     @Override
     public Dict getFileToken() {
         return Dict.create()
-                .set("uploadType", UploadTypeEnum.LOCAL);
+                .set("uploadType", UploadTypeEnum.FAST);
     }
 
     @Override
     public UploadFileVo uploadFile(MultipartFile file) {
-        StorePath storePath;
-        try {
-            storePath = FastUtils.uploadFile(file);
+        return upload(getSource(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return upload(getSource(file));
+    }
+
+    /**
+     * 按声明的长度流式上传（存储不返回MD5，只记录校验值）
+     */
+    @Override
+    protected UploadFileVo upload(UploadSource source) {
+        String extension = FilenameUtils.getExtension(source.getFileName());
+        try (InputStream inputStream = checksum(source.getInputStream())) {
+            StorePath storePath = source.getLength() < 0 ? appendUpload(inputStream, extension)
+                    : fastFileStorageClient.uploadFile(inputStream, source.getLength(), extension, null);
+            return verify(format(source.getFileName(), serverUrl, storePath.getFullPath()), inputStream, null, null);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
+            throw new RuntimeException("文件上传失败", e);
+        }
+    }
+
+    /**
+     * 长度未知时按分片写入appender文件，内存中只保留一个分片，失败时删除已写入的部分
+     */
+    private StorePath appendUpload(InputStream inputStream, String extension) throws IOException {
+        byte[] buffer = new byte[multipartUploadEngine.getPartSize()];
+        int length = IOUtils.read(inputStream, buffer);
+        StorePath storePath = appendFileStorageClient.uploadAppenderFile(null
+                , new ByteArrayInputStream(buffer, 0, length), length, extension);
+        try {
+            while ((length = IOUtils.read(inputStream, buffer)) > 0) {
+                appendFileStorageClient.appendFile(storePath.getGroup(), storePath.getPath()
+                        , new ByteArrayInputStream(buffer, 0, length), length);
+            }
+            return storePath;
+        } catch (Exception e) {
+            try {
+                fastFileStorageClient.deleteFile(storePath.getFullPath());
+            } catch (Exception ex) {
+                log.error("appender文件删除失败：" + storePath.getFullPath(), ex);
+            }
+            throw e;
         }
-        String fileKey = storePath.getFullPath();
-        String fileName = getFileName(file);
-        return format(fileName, serverUrl, fileKey);
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        StorePath storePath;
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        // 不支持断点续传
+        return uploadFile(file);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        // 不支持断点续传
+        return uploadFile(file);
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        String fileKey = parseFileKey(urlPath, serverUrl);
+        return fileKey == null ? super.getInputStream(urlPath) : getInputStream(fileKey, 0, -1);
+    }
+
+    /**
+     * storage原生下载，支持范围读取，不经过nginx
+     * 直接返回storage连接上的流，读到末尾后关闭时归还连接，未读完关闭时丢弃连接（连接上还有未读取的数据）
+     */
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        StorePath storePath = StorePath.parseFromUrl(fileKey);
+        InetSocketAddress address = null;
+        Connection connection = null;
         try {
-            storePath = FastUtils.uploadFile(file);
+            address = trackerClient.getFetchStorage(storePath.getGroup(), storePath.getPath()).getInetSocketAddress();
+            connection = connectionPool.borrowObject(address);
+            FdfsInputStream inputStream = new StorageDownloadCommand<>(storePath.getGroup(), storePath.getPath()
+                    , offset, Math.max(length, 0), ins -> (FdfsInputStream) ins).execute(connection);
+            return new StorageInputStream(inputStream, address, connection);
         } catch (Exception e) {
+            if (connection != null) {
+                release(address, connection, false);
+            }
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
+            throw new RuntimeException("获取文件流失败", e);
+        }
+    }
+
+    /**
+     * 归还或丢弃storage连接
+     */
+    private void release(InetSocketAddress address, Connection connection, boolean reusable) {
+        try {
+            if (reusable) {
+                connectionPool.returnObject(address, connection);
+            } else {
+                connectionPool.invalidateObject(address, connection);
+            }
+        } catch (Exception e) {
+            log.error("storage连接释放失败：" + address, e);
+        }
+    }
+
+    /**
+     * storage连接上的文件流，关闭时释放连接
+     */
+    private class StorageInputStream extends FilterInputStream {
+
+        private final InetSocketAddress address;
+
+        private final Connection connection;
+
+        private boolean closed;
+
+        private StorageInputStream(FdfsInputStream inputStream, InetSocketAddress address, Connection connection) {
+            super(inputStream);
+            this.address = address;
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(address, connection, ((FdfsInputStream) in).isReadCompleted());
         }
-        String fileName = getFileName(file);
-        String fileKey = storePath.getFullPath();
-        return format(fileName, serverUrl, fileKey);
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        return false;
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        // storage没有批量删除接口，按批并发逐个删除
+        return batchDelete(fileKeys, DELETE_BATCH_SIZE, chunk -> {
+            Map<String, String> errorMap = new HashMap<>();
+            for (String fileKey : chunk) {
+                try {
+                    fastFileStorageClient.deleteFile(fileKey);
+                } catch (FdfsServerException e) {
+                    // 文件不存在视为删除成功
+                    if (e.getErrorCode() != ERROR_NOT_FOUND) {
+                        errorMap.put(fileKey, e.getMessage());
+                    }
+                } catch (Exception e) {
+                    errorMap.put(fileKey, e.getMessage());
+                }
+            }
+            return errorMap;
+        });
     }
 
 }
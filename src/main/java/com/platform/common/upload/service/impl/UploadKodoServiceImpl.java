@@ -2,23 +2,42 @@ package com.platform.common.upload.service.impl;
 
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import cn.hutool.core.util.HexUtil;
 import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.multipart.MultipartUploadSupport;
+import com.platform.common.upload.multipart.UploadPart;
+import com.platform.common.upload.route.ConditionalOnUploadType;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import com.qiniu.common.QiniuException;
+import com.qiniu.http.Client;
 import com.qiniu.http.Response;
+import com.qiniu.storage.ApiUploadV2AbortUpload;
+import com.qiniu.storage.ApiUploadV2CompleteUpload;
+import com.qiniu.storage.ApiUploadV2InitUpload;
+import com.qiniu.storage.ApiUploadV2UploadPart;
 import com.qiniu.storage.BucketManager;
 import com.qiniu.storage.UploadManager;
+import com.qiniu.storage.model.BatchStatus;
+import com.qiniu.storage.persistent.FileRecorder;
 import com.qiniu.util.Auth;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 七牛云上传
@@ -26,52 +45,119 @@ import java.util.List;
 @Slf4j
 @Service("uploadKodoService")
 @Configuration
-@ConditionalOnProperty(prefix = "upload", name = "uploadType", havingValue = "kodo")
-public class UploadKodoServiceImpl extends UploadBaseService implements UploadService {
+@ConditionalOnUploadType(UploadTypeEnum.KODO)
+public class UploadKodoServiceImpl extends UploadBaseService implements UploadService, MultipartUploadSupport {
+
+    /**
+     * 单次批量操作上限
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final int HTTP_OK = 200;
+
+    private static final int HTTP_PARTIAL_SUCCESS = 298;
+
+    private static final int NO_SUCH_ENTRY = 612;
+
+    /**
+     * 流式上传时超过该大小（字节）使用分片上传；SDK对不超过putThreshold的流整个读入内存后表单上传
+     */
+    private static final int STREAM_PUT_THRESHOLD = 64 * 1024;
 
     /**
      * 服务端域名
      */
-    @Value("${upload.serverUrl}")
+    @Value("${upload.kodo.serverUrl:${upload.serverUrl:}}")
     private String serverUrl;
     /**
      * accessKey
      */
-    @Value("${upload.accessKey}")
+    @Value("${upload.kodo.accessKey:${upload.accessKey:}}")
     private String accessKey;
     /**
      * secretKey
      */
-    @Value("${upload.secretKey}")
+    @Value("${upload.kodo.secretKey:${upload.secretKey:}}")
     private String secretKey;
     /**
      * bucket
      */
-    @Value("${upload.bucket}")
+    @Value("${upload.kodo.bucket:${upload.bucket:}}")
     private String bucket;
     /**
      * region
      */
-    @Value("${upload.region}")
+    @Value("${upload.kodo.region:${upload.region:}}")
     private String region;
     /**
      * prefix
      */
-    @Value("${upload.prefix:}")
+    @Value("${upload.kodo.prefix:${upload.prefix:}}")
     private String prefix;
+    /**
+     * 断点记录目录（大文件并发分片上传的进度）
+     */
+    @Value("${upload.kodo.recorderDir:${java.io.tmpdir}/upload-kodo}")
+    private String recorderDir;
+
+    /**
+     * 鉴权
+     */
+    private Auth auth;
+    /**
+     * 上传管理（单例，复用连接池），本地文件不超过分片阈值时表单上传（从文件读取，不占用内存）
+     */
+    private UploadManager uploadManager;
+    /**
+     * 流式上传管理，超过 STREAM_PUT_THRESHOLD 时分片上传，内存占用为分片大小乘以并发数
+     */
+    private UploadManager streamUploadManager;
+    /**
+     * 空间管理（单例，复用连接池）
+     */
+    private BucketManager bucketManager;
+    /**
+     * 分片上传（v2）http客户端
+     */
+    private Client client;
 
     /**
-     * 获取Auth
+     * 初始化kodo
      */
-    private Auth getAuth() {
-        return Auth.create(accessKey, secretKey);
+    @PostConstruct
+    public void initKodo() throws IOException {
+        com.qiniu.storage.Configuration configuration = new com.qiniu.storage.Configuration();
+        configuration.dispatcherMaxRequests = maxConnections;
+        configuration.dispatcherMaxRequestsPerHost = maxConnections;
+        configuration.connectionPoolMaxIdleCount = maxIdle;
+        configuration.connectionPoolMaxIdleMinutes = (int) Math.max(1, TimeUnit.MILLISECONDS.toMinutes(idleTimeout));
+        configuration.connectTimeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(connectTimeout));
+        configuration.readTimeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(readTimeout));
+        configuration.writeTimeout = configuration.readTimeout;
+        configuration.resumableUploadAPIVersion = com.qiniu.storage.Configuration.ResumableUploadAPIVersion.V2;
+        configuration.resumableUploadAPIV2BlockSize = multipartUploadEngine.getPartSize();
+        configuration.resumableUploadMaxConcurrentTaskCount = multipartUploadEngine.getParallelism();
+        this.auth = Auth.create(accessKey, secretKey);
+        // UploadManager复制一份配置，两个实例的阈值互不影响
+        // 超过阈值的文件使用v2并发分片上传
+        configuration.putThreshold = (int) Math.min(multipartUploadEngine.getThreshold(), Integer.MAX_VALUE);
+        this.uploadManager = new UploadManager(configuration, new FileRecorder(recorderDir));
+        configuration.putThreshold = STREAM_PUT_THRESHOLD;
+        this.streamUploadManager = new UploadManager(configuration);
+        this.bucketManager = new BucketManager(auth, configuration);
+        this.client = new Client(configuration);
     }
 
     /**
      * 获取Token
      */
     private String getToken(String fileKey) {
-        return getAuth().uploadToken(bucket, fileKey);
+        return auth.uploadToken(bucket, fileKey);
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return UploadTypeEnum.KODO;
     }
 
     @Override
@@ -94,39 +180,44 @@ public class UploadKodoServiceImpl extends UploadBaseService implements UploadSe
 
     @Override
     public UploadFileVo uploadFile(MultipartFile file) {
-        String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
-        String token = getToken(fileKey);
-        Response response = null;
-        try {
-            UploadManager uploadManager = new UploadManager(new com.qiniu.storage.Configuration());
-            response = uploadManager.put(file.getBytes(), fileKey, token);
-            return format(fileName, serverUrl, fileKey);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            if (response != null) {
-                response.close();
-            }
-        }
+        return upload(getSource(file));
     }
 
     @Override
     public UploadFileVo uploadFile(File file) {
-        String fileName = getFileName(file);
-        String fileKey = getFileKey(prefix);
-        fileKey=appendFileExtension(fileName,fileKey);
+        return upload(getSource(file));
+    }
+
+    /**
+     * 按声明的长度流式上传，本地文件不校验时按文件分片上传
+     */
+    @Override
+    protected UploadFileVo upload(UploadSource source) {
+        String fileName = source.getFileName();
+        String fileKey = appendFileExtension(fileName, getFileKey(prefix));
         String token = getToken(fileKey);
         Response response = null;
         try {
-            UploadManager uploadManager = new UploadManager(new com.qiniu.storage.Configuration());
-            response = uploadManager.put(file, fileKey, token);
-            return format(fileName, serverUrl, fileKey);
+            if (source.getPath() != null && !integrity) {
+                // 大文件并发分片上传，进度记录在recorderDir，失败重试时跳过已上传的分片
+                response = uploadManager.put(source.getPath().toFile(), fileKey, token, null
+                        , source.getContentType(), false);
+                return format(fileName, serverUrl, fileKey);
+            }
+            // 流式上传，不把整个文件读入内存；校验时边读边计算
+            try (InputStream inputStream = checksum(source.getInputStream(), true)) {
+                if (source.getLength() < 0) {
+                    // 长度未知时按块分片上传
+                    response = streamUploadManager.put(inputStream, fileKey, token, null, source.getContentType());
+                } else {
+                    response = streamUploadManager.put(inputStream, source.getLength(), fileKey, token, null
+                            , source.getContentType(), false);
+                }
+                return verify(format(fileName, serverUrl, fileKey), inputStream, getHash(response), null);
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
+            throw new RuntimeException("文件上传失败", e);
         } finally {
             if (response != null) {
                 response.close();
@@ -134,22 +225,114 @@ public class UploadKodoServiceImpl extends UploadBaseService implements UploadSe
         }
     }
 
+    /**
+     * 上传返回的文件hash，只取按4MB分块计算的qetag（以F或l开头），其他算法不比对
+     */
+    private static String getHash(Response response) throws QiniuException {
+        Object hash = response.jsonToMap().get("hash");
+        if (hash == null || !(hash.toString().startsWith("F") || hash.toString().startsWith("l"))) {
+            return null;
+        }
+        return hash.toString();
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl);
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        String fileKey = parseFileKey(urlPath, serverUrl);
+        return fileKey == null ? super.getInputStream(urlPath) : getInputStream(fileKey, 0, -1);
+    }
+
+    /**
+     * kodo没有sdk下载接口，使用签名地址通过连接池下载（公有空间同样可用）
+     */
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        String url = auth.privateDownloadUrl(serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey);
+        return getUrlInputStream(url, offset, length);
+    }
+
     @Override
-    public boolean delFile(List<String> dataList) {
-        Auth auth = getAuth();
-        BucketManager bucketManager = new BucketManager(auth, new com.qiniu.storage.Configuration());
-        BucketManager.BatchOperations operations = new BucketManager.BatchOperations();
-        dataList.forEach(data -> {
-            operations.addDeleteOp(bucket, data);
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return batchDelete(fileKeys, DELETE_BATCH_SIZE, chunk -> {
+            BucketManager.BatchOperations operations = new BucketManager.BatchOperations();
+            chunk.forEach(fileKey -> operations.addDeleteOp(bucket, fileKey));
+            Response response;
+            try {
+                response = bucketManager.batch(operations);
+            } catch (QiniuException e) {
+                // 298表示部分失败，响应中包含每个操作的结果
+                if (e.response == null || e.code() != HTTP_PARTIAL_SUCCESS) {
+                    throw e;
+                }
+                response = e.response;
+            }
+            BatchStatus[] statusList = response.jsonToObject(BatchStatus[].class);
+            Map<String, String> errorMap = new HashMap<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                BatchStatus status = statusList[i];
+                // 612表示文件不存在，视为删除成功
+                if (status.code != HTTP_OK && status.code != NO_SUCH_ENTRY) {
+                    errorMap.put(chunk.get(i), status.data == null ? String.valueOf(status.code) : status.data.error);
+                }
+            }
+            return errorMap;
         });
-        try {
-            bucketManager.batch(operations);
-        } catch (QiniuException ex) {
-            //如果遇到异常，说明删除失败
-            System.err.println(ex.code());
-            System.err.println(ex.response.toString());
+    }
+
+    @Override
+    public String initiateMultipartUpload(String fileKey) throws QiniuException {
+        ApiUploadV2InitUpload.Request request = new ApiUploadV2InitUpload.Request(region, getToken(fileKey))
+                .setKey(fileKey);
+        return new ApiUploadV2InitUpload(client).request(request).getUploadId();
+    }
+
+    @Override
+    public String uploadPart(String fileKey, String uploadId, int partNumber, byte[] data, int length) throws QiniuException {
+        ApiUploadV2UploadPart.Request request = new ApiUploadV2UploadPart.Request(region, getToken(fileKey), uploadId, partNumber)
+                .setKey(fileKey)
+                .setUploadData(data, 0, length, null);
+        ApiUploadV2UploadPart.Response response = new ApiUploadV2UploadPart(client).request(request);
+        if (integrity && response.getMd5() != null
+                && !HexUtil.encodeHexStr(md5(data, length)).equals(response.getMd5())) {
+            throw new IllegalStateException("分片校验失败：" + fileKey + "，分片" + partNumber);
         }
-        return false;
+        return response.getEtag();
+    }
+
+    @Override
+    public void completeMultipartUpload(String fileKey, String uploadId, List<UploadPart> partList) throws QiniuException {
+        List<Map<String, Object>> partsInfo = partList.stream()
+                .map(part -> {
+                    Map<String, Object> info = new HashMap<>();
+                    info.put(ApiUploadV2CompleteUpload.Request.PART_NUMBER, part.getPartNumber());
+                    info.put(ApiUploadV2CompleteUpload.Request.PART_ETG, part.getEtag());
+                    return info;
+                })
+                .collect(Collectors.toList());
+        ApiUploadV2CompleteUpload.Request request = new ApiUploadV2CompleteUpload.Request(region, getToken(fileKey), uploadId, partsInfo)
+                .setKey(fileKey);
+        new ApiUploadV2CompleteUpload(client).request(request);
+    }
+
+    @Override
+    public void abortMultipartUpload(String fileKey, String uploadId) throws QiniuException {
+        ApiUploadV2AbortUpload.Request request = new ApiUploadV2AbortUpload.Request(region, getToken(fileKey), uploadId)
+                .setKey(fileKey);
+        new ApiUploadV2AbortUpload(client).request(request);
     }
 
 }
@@ -1,22 +1,39 @@
 package com.platform.common.upload.service.impl;
 
-import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
-import cn.hutool.core.util.IdUtil;
 import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.route.ConditionalOnUploadType;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 本地上传
@@ -24,18 +41,39 @@ import java.util.List;
 @Slf4j
 @Service("uploadLocalService")
 @Configuration
-@ConditionalOnProperty(prefix = "upload", name = "uploadType", havingValue = "local")
+@ConditionalOnUploadType(UploadTypeEnum.LOCAL)
 public class UploadLocalServiceImpl extends UploadBaseService implements UploadService {
 
+    /**
+     * 每批删除数量
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     @Value("${platform.rootPath}")
     private String rootPath;
 
     /**
      * 服务端域名
      */
-    @Value("${upload.serverUrl}")
+    @Value("${upload.local.serverUrl:${upload.serverUrl:}}")
     private String serverUrl;
 
+    /**
+     * 文件转存方式：copy（零拷贝复制）、move（移动源文件）、link（硬链接源文件）
+     */
+    @Value("${upload.local.transferMode:copy}")
+    private String transferMode;
+
+    /**
+     * 已创建的目录
+     */
+    private final Set<String> dirCache = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return UploadTypeEnum.LOCAL;
+    }
+
     @Override
     public String getServerUrl() {
         return serverUrl;
@@ -51,46 +89,216 @@ public class UploadLocalServiceImpl extends UploadBaseService implements UploadS
     public UploadFileVo uploadFile(MultipartFile file) {
         String fileName = getFileName(file);
         String fileKey = _getFileKey(rootPath);
-        try {
-            // 文件拷贝
-            file.transferTo(new File(rootPath + FileNameUtil.UNIX_SEPARATOR + fileKey));
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        }
         // 组装对象
         String filePath = serverUrl + DEFAULT_DIR + FileNameUtil.UNIX_SEPARATOR + fileKey;
         UploadFileVo fileVo = format(fileName, serverUrl, fileKey)
                 .setFilePath(filePath);
-        return fileVo;
+        try {
+            Path target = Paths.get(rootPath, fileKey);
+            if (!integrity) {
+                // 文件拷贝（容器可直接移动已落地的临时文件），同样写入临时文件后原子改名
+                Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+                try {
+                    file.transferTo(temp.toFile());
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                return fileVo;
+            }
+            // 边拷贝边计算校验值
+            try (InputStream inputStream = checksum(file.getInputStream())) {
+                write(inputStream, target);
+                return verify(fileVo, inputStream, null, null);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败", e);
+        }
     }
 
     @Override
     public UploadFileVo uploadFile(File file) {
         String fileName = getFileName(file);
         String fileKey = _getFileKey(rootPath);
-        // 文件拷贝
-        FileUtil.copyFile(file, new File(rootPath + FileNameUtil.UNIX_SEPARATOR + fileKey));
         // 组装对象
         UploadFileVo fileVo = format(fileName, serverUrl, fileKey)
                 .setFilePath(serverUrl + DEFAULT_DIR + FileNameUtil.UNIX_SEPARATOR + fileKey);
-        return fileVo;
+        try {
+            // 文件转存
+            Path target = new File(rootPath + FileNameUtil.UNIX_SEPARATOR + fileKey).toPath();
+            transfer(file.toPath(), target);
+            if (!integrity) {
+                return fileVo;
+            }
+            // 转存不经过用户态，读取一次目标文件计算校验值
+            try (InputStream inputStream = checksum(Files.newInputStream(target))) {
+                IOUtils.copy(inputStream, NullOutputStream.NULL_OUTPUT_STREAM);
+                return verify(fileVo, inputStream, null, null);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败", e);
+        }
+    }
+
+    /**
+     * 直接写入磁盘，不需要预读
+     */
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        return upload(source);
+    }
+
+    @Override
+    protected UploadFileVo upload(UploadSource source) {
+        String fileKey = _getFileKey(rootPath);
+        // 组装对象
+        UploadFileVo fileVo = format(source.getFileName(), serverUrl, fileKey)
+                .setFilePath(serverUrl + DEFAULT_DIR + FileNameUtil.UNIX_SEPARATOR + fileKey);
+        try (InputStream inputStream = checksum(source.getInputStream())) {
+            write(inputStream, Paths.get(rootPath, fileKey));
+            return verify(fileVo, inputStream, null, null);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("文件上传失败", e);
+        }
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        return false;
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        // 不支持断点续传
+        return uploadFile(file);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        // 不支持断点续传
+        return uploadFile(file);
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        String fileKey = parseFileKey(urlPath, serverUrl + DEFAULT_DIR);
+        return fileKey == null ? super.getInputStream(urlPath) : getInputStream(fileKey, 0, -1);
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(fileKey), StandardOpenOption.READ);
+            channel.position(offset);
+            InputStream inputStream = Channels.newInputStream(channel);
+            return length >= 0 ? new BoundedInputStream(inputStream, length) : inputStream;
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException("获取文件流失败", e);
+        }
+    }
+
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return batchDelete(fileKeys, DELETE_BATCH_SIZE, chunk -> {
+            Map<String, String> errorMap = new HashMap<>();
+            for (String fileKey : chunk) {
+                try {
+                    Files.deleteIfExists(resolve(fileKey));
+                } catch (IOException | IllegalArgumentException e) {
+                    errorMap.put(fileKey, e.getMessage());
+                }
+            }
+            return errorMap;
+        });
+    }
+
+    /**
+     * fileKey对应的文件，不允许访问根目录以外的文件（如 ../../etc/passwd）
+     */
+    private Path resolve(String fileKey) {
+        Path root = Paths.get(rootPath).toAbsolutePath().normalize();
+        Path path = root.resolve(fileKey).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            // 不是传输故障，不计入熔断
+            throw new IllegalArgumentException("文件路径不合法：" + fileKey);
+        }
+        return path;
     }
 
     /**
      * 本地存储
      */
-    private static String _getFileKey(String uploadPath) {
-        // 文件路径
-        String filePath = DateUtil.format(DateUtil.date(), "yyyy/MM/dd");
-        // 生成文件夹
-        FileUtil.mkdir(uploadPath + FileNameUtil.UNIX_SEPARATOR + filePath);
-        return filePath + FileNameUtil.UNIX_SEPARATOR + IdUtil.objectId();
+    private String _getFileKey(String uploadPath) {
+        // 文件全名（与其他存储使用同一生成策略，无前缀）
+        String fileKey = getFileKey(null);
+        String filePath = fileKey.substring(0, fileKey.lastIndexOf(FileNameUtil.UNIX_SEPARATOR));
+        // 生成文件夹（每个目录只创建一次）
+        if (dirCache.add(filePath)) {
+            try {
+                FileUtil.mkdir(uploadPath + FileNameUtil.UNIX_SEPARATOR + filePath);
+            } catch (Exception e) {
+                dirCache.remove(filePath);
+                throw e;
+            }
+        }
+        return fileKey;
+    }
+
+    /**
+     * 文件转存
+     */
+    private void transfer(Path source, Path target) throws IOException {
+        if ("move".equals(transferMode)) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                // 不在同一文件系统，改为复制
+                log.debug("跨文件系统，改为复制：" + source);
+            }
+        } else if ("link".equals(transferMode)) {
+            try {
+                Files.createLink(target, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.debug("无法创建硬链接，改为复制：" + source);
+            }
+        }
+        copy(source, target);
+    }
+
+    /**
+     * 写入临时文件后原子改名，写入失败（如客户端断开）时删除临时文件，不会在目标位置留下不完整文件
+     */
+    private static void write(InputStream inputStream, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 通道间直接传输（零拷贝），写入临时文件后原子改名，避免读到不完整文件
+     */
+    private static void copy(Path source, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE
+                     , StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
     }
 
 }
@@ -2,21 +2,48 @@ package com.platform.common.upload.service.impl;
 
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
 import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.multipart.MultipartUploadSupport;
+import com.platform.common.upload.multipart.UploadPart;
+import com.platform.common.upload.route.ConditionalOnUploadType;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
+import io.minio.ComposeObjectArgs;
+import io.minio.ComposeSource;
+import io.minio.GetObjectArgs;
+import io.minio.ListObjectsArgs;
 import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
 import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * MinIO 上传
@@ -24,49 +51,97 @@ import java.util.List;
 @Slf4j
 @Service("uploadMinioService")
 @Configuration
-@ConditionalOnProperty(prefix = "upload", name = "uploadType", havingValue = "minio")
-public class UploadMinioServiceImpl extends UploadBaseService implements UploadService {
+@ConditionalOnUploadType(UploadTypeEnum.MINIO)
+public class UploadMinioServiceImpl extends UploadBaseService implements UploadService, MultipartUploadSupport {
+
+    /**
+     * 单次批量删除上限
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    /**
+     * 分片临时对象目录
+     */
+    private static final String PART_DIR = ".parts/";
 
     /**
      * 服务端域名
      */
-    @Value("${upload.serverUrl}")
+    @Value("${upload.minio.serverUrl:${upload.serverUrl:}}")
     private String serverUrl;
 
     /**
      * accessKey
      */
-    @Value("${upload.accessKey}")
+    @Value("${upload.minio.accessKey:${upload.accessKey:}}")
     private String accessKey;
 
     /**
      * secretKey
      */
-    @Value("${upload.secretKey}")
+    @Value("${upload.minio.secretKey:${upload.secretKey:}}")
     private String secretKey;
 
     /**
      * bucket
      */
-    @Value("${upload.bucket}")
+    @Value("${upload.minio.bucket:${upload.bucket:}}")
     private String bucket;
 
     /**
      * prefix
      */
-    @Value("${upload.prefix}")
+    @Value("${upload.minio.prefix:${upload.prefix:}}")
     private String prefix;
 
+    /**
+     * http客户端（连接池）
+     */
+    private OkHttpClient httpClient;
+
+    /**
+     * MinIO 客户端（单例，随容器销毁）
+     */
+    private MinioClient client;
+
     /**
      * 初始化 MinIO 客户端
      */
-    private MinioClient initMinio() {
-        return MinioClient.builder()
+    @PostConstruct
+    public void initMinio() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConnections);
+        dispatcher.setMaxRequestsPerHost(maxConnections);
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdle, idleTimeout, TimeUnit.MILLISECONDS))
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .build();
+        this.client = MinioClient.builder()
                 .endpoint(serverUrl)
                 .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
                 .build();
     }
 
+    /**
+     * 关闭 MinIO 客户端
+     */
+    @PreDestroy
+    public void destroyMinio() {
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return UploadTypeEnum.MINIO;
+    }
+
     @Override
     public String getServerUrl() {
         return serverUrl;
@@ -86,62 +161,165 @@ public class UploadMinioServiceImpl extends UploadBaseService implements UploadS
 
     @Override
     public UploadFileVo uploadFile(MultipartFile file) {
-        MinioClient client = initMinio();
-        try {
-            String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
+        return upload(getSource(file));
+    }
 
-            fileKey=appendFileExtension(fileName,fileKey);
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return upload(getSource(file));
+    }
 
-            InputStream inputStream = file.getInputStream();
-            client.putObject(PutObjectArgs.builder()
+    /**
+     * 大文件分片上传，否则按声明的长度流式上传并比对ETag
+     */
+    @Override
+    protected UploadFileVo upload(UploadSource source) {
+        String fileName = source.getFileName();
+        String fileKey = appendFileExtension(fileName, getFileKey(prefix));
+        try (InputStream inputStream = checksum(source.getInputStream())) {
+            if (isMultipart(source)) {
+                multipartUploadEngine.upload(this, fileKey, inputStream);
+                return verify(format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey), inputStream
+                        , null, null);
+            }
+            PutObjectArgs.Builder builder = PutObjectArgs.builder()
                     .bucket(bucket)
                     .object(fileKey)
-                    .stream(inputStream, inputStream.available(), -1)
-                    .build());
-            return format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey);
+                    .stream(inputStream, source.getLength(), -1);
+            if (source.getContentType() != null) {
+                builder.contentType(source.getContentType());
+            }
+            ObjectWriteResponse response = client.putObject(builder.build());
+            return verify(format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey), inputStream
+                    , response.etag(), null);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
+            throw new RuntimeException("文件上传失败", e);
         }
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        MinioClient client = initMinio();
-        try {
-            String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket);
+    }
 
-            fileKey=appendFileExtension(fileName,fileKey);
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket);
+    }
 
-            InputStream inputStream = java.nio.file.Files.newInputStream(file.toPath());
-            client.putObject(PutObjectArgs.builder()
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        String fileKey = parseFileKey(urlPath, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket);
+        return fileKey == null ? super.getInputStream(urlPath) : getInputStream(fileKey, 0, -1);
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
+        try {
+            GetObjectArgs.Builder builder = GetObjectArgs.builder()
                     .bucket(bucket)
                     .object(fileKey)
-                    .stream(inputStream, inputStream.available(), -1)
-                    .build());
-            return format(fileName, serverUrl + FileNameUtil.UNIX_SEPARATOR + bucket, fileKey);
+                    .offset(offset);
+            if (length >= 0) {
+                builder.length(length);
+            }
+            return client.getObject(builder.build());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
+            throw new RuntimeException("获取文件流失败", e);
         }
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        MinioClient client = initMinio();
-        try {
-            for (String data : dataList) {
-                client.removeObject(io.minio.RemoveObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(data)
-                        .build());
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return batchDelete(fileKeys, DELETE_BATCH_SIZE, chunk -> {
+            List<DeleteObject> objectList = chunk.stream()
+                    .map(DeleteObject::new)
+                    .collect(Collectors.toList());
+            // 结果是惰性的，遍历时才发送请求，只返回失败的文件
+            Iterable<Result<DeleteError>> results = client.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(bucket)
+                    .objects(objectList)
+                    .build());
+            Map<String, String> errorMap = new HashMap<>();
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                errorMap.put(error.objectName(), error.message());
             }
-            return true;
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new RuntimeException("文件删除失败");
+            return errorMap;
+        });
+    }
+
+    /**
+     * minio不直接开放分片接口，分片先作为临时对象上传，最后服务端合并
+     */
+    @Override
+    public String initiateMultipartUpload(String fileKey) {
+        return IdUtil.objectId();
+    }
+
+    @Override
+    public String uploadPart(String fileKey, String uploadId, int partNumber, byte[] data, int length) throws Exception {
+        String etag = client.putObject(PutObjectArgs.builder()
+                .bucket(bucket)
+                .object(getPartKey(uploadId, partNumber))
+                .stream(new ByteArrayInputStream(data, 0, length), length, -1)
+                .build()).etag();
+        // 分片为普通对象，ETag即MD5
+        if (integrity && etag != null && !HexUtil.encodeHexStr(md5(data, length)).equals(etag.replace("\"", ""))) {
+            throw new IllegalStateException("分片校验失败：" + fileKey + "，分片" + partNumber);
+        }
+        return etag;
+    }
+
+    @Override
+    public void completeMultipartUpload(String fileKey, String uploadId, List<UploadPart> partList) throws Exception {
+        List<ComposeSource> sourceList = partList.stream()
+                .map(part -> ComposeSource.builder()
+                        .bucket(bucket)
+                        .object(getPartKey(uploadId, part.getPartNumber()))
+                        .build())
+                .collect(Collectors.toList());
+        client.composeObject(ComposeObjectArgs.builder()
+                .bucket(bucket)
+                .object(fileKey)
+                .sources(sourceList)
+                .build());
+        abortMultipartUpload(fileKey, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String fileKey, String uploadId) throws Exception {
+        List<DeleteObject> objectList = new ArrayList<>();
+        for (Result<Item> result : client.listObjects(ListObjectsArgs.builder()
+                .bucket(bucket)
+                .prefix(PART_DIR + uploadId + FileNameUtil.UNIX_SEPARATOR)
+                .recursive(true)
+                .build())) {
+            objectList.add(new DeleteObject(result.get().objectName()));
+        }
+        if (objectList.isEmpty()) {
+            return;
+        }
+        for (Result<DeleteError> result : client.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(bucket)
+                .objects(objectList)
+                .build())) {
+            DeleteError error = result.get();
+            log.error("分片清理失败：" + error.objectName() + "，" + error.message());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 分片临时对象名称
+     */
+    private static String getPartKey(String uploadId, int partNumber) {
+        return PART_DIR + uploadId + FileNameUtil.UNIX_SEPARATOR + partNumber;
+    }
+
+}
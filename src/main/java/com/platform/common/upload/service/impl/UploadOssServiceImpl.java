@@ -1,27 +1,48 @@
 package com.platform.common.upload.service.impl;
 
-import cn.hutool.core.codec.Base64;
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
 import cn.hutool.core.lang.Dict;
+import com.aliyun.oss.ClientBuilderConfiguration;
 import com.aliyun.oss.OSS;
 import com.aliyun.oss.OSSClientBuilder;
-import com.aliyun.oss.model.PolicyConditions;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
+import com.aliyun.oss.model.DeleteObjectsRequest;
+import com.aliyun.oss.model.DeleteObjectsResult;
+import com.aliyun.oss.model.GetObjectRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PartETag;
+import com.aliyun.oss.model.PutObjectResult;
+import com.aliyun.oss.model.UploadPartRequest;
+import com.platform.common.upload.credential.OssPostSigner;
+import com.platform.common.upload.credential.PostPolicy;
 import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.multipart.MultipartUploadSupport;
+import com.platform.common.upload.multipart.UploadPart;
+import com.platform.common.upload.route.ConditionalOnUploadType;
 import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
 import com.platform.common.upload.vo.UploadFileVo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
-import java.util.Date;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 阿里云上传
@@ -29,46 +50,84 @@ import java.util.List;
 @Slf4j
 @Service("uploadOssService")
 @Configuration
-@ConditionalOnProperty(prefix = "upload", name = "uploadType", havingValue = "oss")
-public class UploadOssServiceImpl extends UploadBaseService implements UploadService {
+@ConditionalOnUploadType(UploadTypeEnum.OSS)
+public class UploadOssServiceImpl extends UploadBaseService implements UploadService, MultipartUploadSupport {
+
+    /**
+     * 单次批量删除上限
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
 
     /**
      * 服务端域名
      */
-    @Value("${upload.serverUrl}")
+    @Value("${upload.oss.serverUrl:${upload.serverUrl:}}")
     private String serverUrl;
     /**
      * accessKey
      */
-    @Value("${upload.accessKey}")
+    @Value("${upload.oss.accessKey:${upload.accessKey:}}")
     private String accessKey;
     /**
      * secretKey
      */
-    @Value("${upload.secretKey}")
+    @Value("${upload.oss.secretKey:${upload.secretKey:}}")
     private String secretKey;
     /**
      * bucket
      */
-    @Value("${upload.bucket}")
+    @Value("${upload.oss.bucket:${upload.bucket:}}")
     private String bucket;
     /**
      * region
      */
-    @Value("${upload.region}")
+    @Value("${upload.oss.region:${upload.region:}}")
     private String region;
     /**
      * prefix
      */
-    @Value("${upload.prefix}")
+    @Value("${upload.oss.prefix:${upload.prefix:}}")
     private String prefix;
 
+    /**
+     * oss客户端（单例，随容器销毁）
+     */
+    private OSS client;
+
+    /**
+     * 表单上传签名
+     */
+    private OssPostSigner postSigner;
+
     /**
      * 初始化oss
      */
-    private OSS initOSS() {
-        return new OSSClientBuilder()
-                .build(region, accessKey, secretKey);
+    @PostConstruct
+    public void initOSS() {
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setMaxConnections(maxConnections);
+        configuration.setConnectionTimeout(connectTimeout);
+        configuration.setSocketTimeout(readTimeout);
+        configuration.setIdleConnectionTime(idleTimeout);
+        configuration.setConnectionTTL(keepAlive);
+        this.client = new OSSClientBuilder()
+                .build(region, accessKey, secretKey, configuration);
+        this.postSigner = new OssPostSigner(secretKey, tokenExpire, tokenReuse);
+    }
+
+    /**
+     * 关闭oss
+     */
+    @PreDestroy
+    public void destroyOSS() {
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    @Override
+    public UploadTypeEnum getUploadType() {
+        return UploadTypeEnum.OSS;
     }
 
     @Override
@@ -78,67 +137,137 @@ public class UploadOssServiceImpl extends UploadBaseService implements UploadSer
 
     @Override
     public Dict getFileToken() {
-        // 1、默认固定值，分钟
-        Integer expire = 30;
-        // 2、过期时间
-        Date expiration = DateUtil.offsetMinute(DateUtil.date(), expire);
-        // 3、构造“策略”（Policy）
-        OSS ossClient = initOSS();
-        PolicyConditions policyConditions = new PolicyConditions();
-        policyConditions.addConditionItem(PolicyConditions.COND_CONTENT_LENGTH_RANGE, 0, 1048576000);
-        String policy = ossClient.generatePostPolicy(expiration, policyConditions);
-        String signature = ossClient.calculatePostSignature(policy);
-        // 4、文件名称
+        // 1、策略按时间窗口复用，本地签名
+        PostPolicy postPolicy = postSigner.getPolicy();
+        // 2、文件名称
         String fileName = getFileName();
         String fileKey = getFileKey(prefix, fileName);
         return Dict.create()
                 .set("uploadType", UploadTypeEnum.OSS)
                 .set("serverUrl", serverUrl)
                 .set("accessKey", accessKey)
-                .set("policy", Base64.encode(policy))
-                .set("signature", signature)
+                .set("policy", postPolicy.getPolicy())
+                .set("signature", postPolicy.getSignature())
                 .set("fileKey", fileKey)
                 .set("filePath", serverUrl + FileNameUtil.UNIX_SEPARATOR + fileKey);
     }
 
     @Override
     public UploadFileVo uploadFile(MultipartFile file) {
-        OSS client = initOSS();
-        try {
-            String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-            fileKey=appendFileExtension(fileName,fileKey);
-            client.putObject(bucket, fileKey, file.getInputStream());
-            return format(fileName, serverUrl, fileKey);
+        return upload(getSource(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return upload(getSource(file));
+    }
+
+    /**
+     * 大文件分片上传，否则按声明的长度流式上传并比对ETag和CRC64
+     */
+    @Override
+    protected UploadFileVo upload(UploadSource source) {
+        String fileName = source.getFileName();
+        String fileKey = appendFileExtension(fileName, getFileKey(prefix));
+        try (InputStream inputStream = checksum(source.getInputStream())) {
+            if (isMultipart(source)) {
+                multipartUploadEngine.upload(this, fileKey, inputStream);
+                return verify(format(fileName, serverUrl, fileKey), inputStream, null, null);
+            }
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(source.getLength());
+            if (source.getContentType() != null) {
+                metadata.setContentType(source.getContentType());
+            }
+            PutObjectResult result = client.putObject(bucket, fileKey, inputStream, metadata);
+            Long crc64 = result.getServerCRC();
+            return verify(format(fileName, serverUrl, fileKey), inputStream, result.getETag()
+                    , crc64 == null ? null : Long.toUnsignedString(crc64));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            client.shutdown();
+            throw new RuntimeException("文件上传失败", e);
         }
     }
 
     @Override
-    public UploadFileVo uploadFile(File file) {
-        OSS client = initOSS();
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl);
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        UploadSource source = getSource(file);
+        String fileKey = appendFileExtension(source.getFileName(), getFileKey(prefix));
+        return resumeUpload(this, uploadId, fileKey, source, serverUrl);
+    }
+
+    @Override
+    public InputStream getInputStream(String urlPath) {
+        String fileKey = parseFileKey(urlPath, serverUrl);
+        return fileKey == null ? super.getInputStream(urlPath) : getInputStream(fileKey, 0, -1);
+    }
+
+    @Override
+    public InputStream getInputStream(String fileKey, long offset, long length) {
         try {
-            String fileName = getFileName(file);
-            String fileKey = getFileKey(prefix);
-            fileKey=appendFileExtension(fileName,fileKey);
-            InputStream inputStream = FileUtil.getInputStream(file);
-            client.putObject(bucket, fileKey, inputStream);
-            return format(fileName, serverUrl, fileKey);
+            GetObjectRequest request = new GetObjectRequest(bucket, fileKey);
+            if (offset > 0 || length >= 0) {
+                // -1表示读取到末尾
+                request.setRange(offset, length >= 0 ? offset + length - 1 : -1);
+            }
+            return client.getObject(request).getObjectContent();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            throw new RuntimeException("文件上传失败");
-        } finally {
-            client.shutdown();
+            throw new RuntimeException("获取文件流失败", e);
         }
     }
 
     @Override
-    public boolean delFile(List<String> dataList) {
-        return false;
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        return batchDelete(fileKeys, DELETE_BATCH_SIZE, chunk -> {
+            // 非静默模式返回已删除的文件，未返回的即为失败
+            DeleteObjectsResult result = client.deleteObjects(new DeleteObjectsRequest(bucket)
+                    .withKeys(chunk)
+                    .withQuiet(false));
+            Set<String> deletedSet = new HashSet<>(result.getDeletedObjects());
+            Map<String, String> errorMap = new HashMap<>();
+            chunk.stream()
+                    .filter(fileKey -> !deletedSet.contains(fileKey))
+                    .forEach(fileKey -> errorMap.put(fileKey, "文件删除失败"));
+            return errorMap;
+        });
+    }
+
+    @Override
+    public String initiateMultipartUpload(String fileKey) {
+        return client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, fileKey))
+                .getUploadId();
+    }
+
+    @Override
+    public String uploadPart(String fileKey, String uploadId, int partNumber, byte[] data, int length) {
+        UploadPartRequest request = new UploadPartRequest(bucket, fileKey, uploadId, partNumber
+                , new ByteArrayInputStream(data, 0, length), length);
+        if (integrity) {
+            // 服务端按Content-MD5校验分片
+            request.setMd5Digest(Base64.getEncoder().encodeToString(md5(data, length)));
+        }
+        return client.uploadPart(request).getETag();
+    }
+
+    @Override
+    public void completeMultipartUpload(String fileKey, String uploadId, List<UploadPart> partList) {
+        List<PartETag> partETags = partList.stream()
+                .map(part -> new PartETag(part.getPartNumber(), part.getEtag()))
+                .collect(Collectors.toList());
+        client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, fileKey, uploadId, partETags));
+    }
+
+    @Override
+    public void abortMultipartUpload(String fileKey, String uploadId) {
+        client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, fileKey, uploadId));
     }
 
 }
@@ -0,0 +1,263 @@
+package com.platform.common.upload.thumb;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从上传中分出的图片数据，原图只读一次
+ * <p>
+ * 上传读取输入流时同时写入，解码线程同时读取；写入不阻塞上传，
+ * 解码落后超过 bufferSize、图片超过 maxSize、上传失败或未读完输入流时放弃，解码读取抛出异常
+ */
+public class ImageTee {
+
+    /**
+     * 图片最大字节数
+     */
+    private final long maxSize;
+
+    /**
+     * 最多缓冲的未解码字节数
+     */
+    private final long bufferSize;
+
+    private final Deque<byte[]> chunkQueue = new ArrayDeque<>();
+
+    /**
+     * 正在读取的块
+     */
+    private byte[] current;
+
+    private int position;
+
+    /**
+     * 未读取的字节数
+     */
+    private long buffered;
+
+    /**
+     * 已写入的字节数
+     */
+    private long written;
+
+    /**
+     * 上传读到了末尾
+     */
+    private boolean eof;
+
+    /**
+     * 写入完成
+     */
+    private boolean finished;
+
+    /**
+     * 解码已结束，不再写入
+     */
+    private boolean readerClosed;
+
+    private IOException error;
+
+    private final AtomicBoolean teed = new AtomicBoolean();
+
+    public ImageTee(long maxSize, long bufferSize) {
+        this.maxSize = maxSize;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * 包装上传读取的输入流，读取的数据同时写入；只分出第一次打开的输入流
+     */
+    public InputStream tee(InputStream inputStream) {
+        if (!teed.compareAndSet(false, true)) {
+            return inputStream;
+        }
+        return new TeeInputStream(inputStream);
+    }
+
+    /**
+     * 上传完成，上传未读完输入流（如只读取了一部分或没有经过输入流）时放弃
+     *
+     * @param length 文件大小，未知时为-1
+     * @return 是否完整写入
+     */
+    public synchronized boolean finish(long length) {
+        if (!finished && error == null) {
+            if (length >= 0 ? written == length : eof) {
+                finished = true;
+                notifyAll();
+            } else {
+                abort("上传未读完输入流");
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * 放弃，解码读取抛出异常
+     */
+    public synchronized void abort(String message) {
+        if (finished || error != null) {
+            return;
+        }
+        error = new IOException(message);
+        clear();
+        notifyAll();
+    }
+
+    /**
+     * 解码读取的输入流
+     */
+    public InputStream getInputStream() {
+        return new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                byte[] buffer = new byte[1];
+                return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                return ImageTee.this.read(buffer, offset, length);
+            }
+
+            @Override
+            public void close() {
+                closeReader();
+            }
+        };
+    }
+
+    private synchronized void write(byte[] buffer, int offset, int length) {
+        if (length <= 0 || finished || readerClosed || error != null) {
+            return;
+        }
+        written += length;
+        if (written > maxSize) {
+            abort("图片超过大小上限");
+            return;
+        }
+        if (buffered + length > bufferSize) {
+            abort("解码落后上传超过缓冲大小");
+            return;
+        }
+        chunkQueue.add(Arrays.copyOfRange(buffer, offset, offset + length));
+        buffered += length;
+        notifyAll();
+    }
+
+    private synchronized void end() {
+        eof = true;
+    }
+
+    private synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            if (error != null) {
+                throw error;
+            }
+            if (current == null || position == current.length) {
+                current = chunkQueue.poll();
+                position = 0;
+            }
+            if (current != null) {
+                int count = Math.min(length, current.length - position);
+                System.arraycopy(current, position, buffer, offset, count);
+                position += count;
+                buffered -= count;
+                return count;
+            }
+            if (finished) {
+                return -1;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("解码已中断");
+            }
+        }
+    }
+
+    private synchronized void closeReader() {
+        readerClosed = true;
+        clear();
+    }
+
+    private void clear() {
+        chunkQueue.clear();
+        current = null;
+        buffered = 0;
+    }
+
+    /**
+     * 上传读取的输入流，读取的数据同时写入；不支持mark，重复读取的数据不会写入两次
+     */
+    private class TeeInputStream extends FilterInputStream {
+
+        private TeeInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                end();
+            } else {
+                write(new byte[]{(byte) value}, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count == -1) {
+                end();
+            } else {
+                write(buffer, offset, count);
+            }
+            return count;
+        }
+
+        /**
+         * 跳过的数据同样写入
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (count == -1) {
+                    break;
+                }
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("不支持reset");
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.platform.common.upload.thumb;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 上传的图片，上传读取内容时同时分出给解码
+ */
+public class ImageTeeMultipartFile implements MultipartFile {
+
+    private final MultipartFile file;
+
+    private final ImageTee imageTee;
+
+    public ImageTeeMultipartFile(MultipartFile file, ImageTee imageTee) {
+        this.file = file;
+        this.imageTee = imageTee;
+    }
+
+    @Override
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return file.getOriginalFilename();
+    }
+
+    @Override
+    public String getContentType() {
+        return file.getContentType();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return file.isEmpty();
+    }
+
+    @Override
+    public long getSize() {
+        return file.getSize();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        try (InputStream inputStream = getInputStream()) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return imageTee.tee(file.getInputStream());
+    }
+
+    /**
+     * 经过输入流复制（不移动临时文件），复制的同时分出数据
+     */
+    @Override
+    public void transferTo(File dest) throws IOException {
+        try (InputStream inputStream = getInputStream()) {
+            Files.copy(inputStream, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
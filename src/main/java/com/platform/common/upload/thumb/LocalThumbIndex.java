@@ -0,0 +1,86 @@
+package com.platform.common.upload.thumb;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 本地缩略图索引，只在单节点内可见，多节点部署时需自定义共享的ThumbIndex
+ * 内存LRU缓存热点文件，全量索引按摘要前两位分目录存放在本地磁盘
+ */
+@Slf4j
+public class LocalThumbIndex implements ThumbIndex {
+
+    private final File indexDir;
+
+    private final LRUCache<String, List<String>> cache;
+
+    public LocalThumbIndex(String indexDir, int cacheSize) {
+        this.indexDir = FileUtil.mkdir(indexDir);
+        this.cache = CacheUtil.newLRUCache(cacheSize);
+    }
+
+    @Override
+    public synchronized List<String> get(String fileKey) {
+        List<String> thumbList = cache.get(fileKey, false);
+        if (thumbList != null) {
+            return thumbList;
+        }
+        File file = getFile(fileKey);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            thumbList = Collections.unmodifiableList(new ArrayList<>(
+                    JSONUtil.parseArray(FileUtil.readUtf8String(file)).toList(String.class)));
+            cache.put(fileKey, thumbList);
+            return thumbList;
+        } catch (Exception e) {
+            log.error("缩略图索引读取失败：" + fileKey, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void put(String fileKey, List<String> thumbKeys) {
+        File file = getFile(fileKey);
+        List<String> thumbList = Collections.unmodifiableList(new ArrayList<>(thumbKeys));
+        try {
+            FileUtil.mkParentDirs(file);
+            File temp = new File(file.getPath() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+            Files.write(temp.toPath(), JSONUtil.toJsonStr(thumbList).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cache.put(fileKey, thumbList);
+        } catch (Exception e) {
+            log.error("缩略图索引写入失败：" + fileKey, e);
+        }
+    }
+
+    @Override
+    public synchronized List<String> remove(String fileKey) {
+        List<String> thumbList = get(fileKey);
+        if (thumbList != null) {
+            cache.remove(fileKey);
+            FileUtil.del(getFile(fileKey));
+        }
+        return thumbList;
+    }
+
+    private File getFile(String fileKey) {
+        String name = SecureUtil.md5(fileKey);
+        return new File(indexDir, name.substring(0, 2) + File.separator + name);
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.platform.common.upload.thumb;
+
+import lombok.Getter;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * 图片解码、缩放、编码
+ */
+public class ThumbImageProcessor {
+
+    /**
+     * 解码后的最大像素数，超过时按比例抽样解码，不在内存中展开原图
+     */
+    private final long maxPixels;
+
+    /**
+     * jpg压缩质量
+     */
+    private final float quality;
+
+    public ThumbImageProcessor(long maxPixels, float quality) {
+        this.maxPixels = Math.max(maxPixels, 1);
+        this.quality = quality;
+    }
+
+    /**
+     * 解码图片，无法识别时返回null
+     */
+    public DecodedImage decode(InputStream inputStream) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                // 先读尺寸，按内存上限计算抽样间隔
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = (int) Math.ceil(Math.sqrt((double) width * height / maxPixels));
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                return new DecodedImage(image, width, height, reader.getFormatName().toLowerCase());
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * 缩放到宽高以内，逐次减半后再缩放到目标尺寸，保证缩小倍数较大时的质量
+     */
+    public BufferedImage resize(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2, alpha);
+        }
+        if (current.getWidth() == width && current.getHeight() == height && current != image) {
+            return current;
+        }
+        return draw(current, width, height, alpha);
+    }
+
+    /**
+     * 编码为jpg或png
+     */
+    public byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (MemoryCacheImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && "jpg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            if (!alpha) {
+                // jpg不支持透明，透明部分填充白色
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * 解码后的图片
+     */
+    @Getter
+    public static class DecodedImage {
+
+        /**
+         * 图片（可能经过抽样）
+         */
+        private final BufferedImage image;
+
+        /**
+         * 原图宽度
+         */
+        private final int width;
+
+        /**
+         * 原图高度
+         */
+        private final int height;
+
+        /**
+         * 原图格式
+         */
+        private final String format;
+
+        private DecodedImage(BufferedImage image, int width, int height, String format) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+        }
+    }
+
+}
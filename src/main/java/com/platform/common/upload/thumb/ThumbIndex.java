@@ -0,0 +1,25 @@
+package com.platform.common.upload.thumb;
+
+import java.util.List;
+
+/**
+ * 缩略图索引（原图fileKey -> 缩略图fileKey），删除原图时删除缩略图
+ */
+public interface ThumbIndex {
+
+    /**
+     * 查询缩略图，不存在返回null
+     */
+    List<String> get(String fileKey);
+
+    /**
+     * 记录原图的缩略图
+     */
+    void put(String fileKey, List<String> thumbKeys);
+
+    /**
+     * 移除原图的索引，返回其缩略图，不存在返回null
+     */
+    List<String> remove(String fileKey);
+
+}
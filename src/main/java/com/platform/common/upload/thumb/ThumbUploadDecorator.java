@@ -0,0 +1,140 @@
+package com.platform.common.upload.thumb;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.platform.common.upload.decorator.UploadServiceDecorator;
+import com.platform.common.upload.service.UploadService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.awt.Dimension;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传图片时生成缩略图，在去重之内（命中去重时直接返回已生成的缩略图）
+ * 可自定义ThumbIndex（如多节点共享的索引）替换默认的本地索引
+ */
+@Component
+@ConditionalOnProperty(prefix = "upload.thumb", name = "enabled", havingValue = "true")
+public class ThumbUploadDecorator implements UploadServiceDecorator {
+
+    /**
+     * 缩略图尺寸（宽x高，逗号分隔）
+     */
+    @Value("${upload.thumb.sizes:200x200}")
+    private String sizes;
+    /**
+     * 生成缩略图的后缀（逗号分隔）
+     */
+    @Value("${upload.thumb.extensions:jpg,jpeg,png,bmp,gif}")
+    private String extensions;
+    /**
+     * 超过该大小（字节）的图片不生成缩略图
+     */
+    @Value("${upload.thumb.maxFileSize:52428800}")
+    private long maxFileSize;
+    /**
+     * 单张图片解码后的最大像素数（每像素约4字节），超过时抽样解码
+     */
+    @Value("${upload.thumb.maxPixels:16777216}")
+    private long maxPixels;
+    /**
+     * jpg压缩质量
+     */
+    @Value("${upload.thumb.quality:0.85}")
+    private float quality;
+    /**
+     * 解码落后上传超过该大小（字节）时不生成缩略图
+     */
+    @Value("${upload.thumb.bufferSize:16777216}")
+    private long bufferSize;
+    /**
+     * 缩略图索引目录（删除原图时删除缩略图），自定义ThumbIndex时不需要
+     */
+    @Value("${upload.thumb.indexDir:}")
+    private String indexDir;
+    /**
+     * 索引缓存条数
+     */
+    @Value("${upload.thumb.cacheSize:10000}")
+    private int cacheSize;
+    /**
+     * 处理线程数（解码与上传同时进行，占用线程直到上传完成）
+     */
+    @Value("${upload.thumb.threads:4}")
+    private int threads;
+    /**
+     * 等待队列长度，队列满时不再解码新的图片，已解码图片的缩放由上传线程处理
+     */
+    @Value("${upload.thumb.queueSize:100}")
+    private int queueSize;
+    /**
+     * 等待缩略图的时间（毫秒）
+     */
+    @Value("${upload.thumb.timeout:30000}")
+    private long timeout;
+
+    private final ObjectProvider<ThumbIndex> thumbIndexProvider;
+
+    private ThreadPoolExecutor executor;
+
+    public ThumbUploadDecorator(ObjectProvider<ThumbIndex> thumbIndexProvider) {
+        this.thumbIndexProvider = thumbIndexProvider;
+    }
+
+    @Override
+    public synchronized UploadService decorate(UploadService uploadService) {
+        ThumbIndex thumbIndex = thumbIndexProvider.getIfAvailable();
+        if (thumbIndex == null) {
+            if (StringUtils.isEmpty(indexDir)) {
+                throw new RuntimeException("缩略图索引目录未配置：upload.thumb.indexDir");
+            }
+            thumbIndex = new LocalThumbIndex(indexDir + File.separator + uploadService.getUploadType().getCode(), cacheSize);
+        }
+        if (executor == null) {
+            // 队列满时拒绝：解码等待上传的数据，不能由上传线程执行
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize)
+                    , new NamedThreadFactory("upload-thumb-", true), new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+        List<Dimension> sizeList = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            String[] values = size.trim().toLowerCase().split("x");
+            if (values.length != 2) {
+                throw new RuntimeException("缩略图尺寸格式错误：" + size);
+            }
+            sizeList.add(new Dimension(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())));
+        }
+        Set<String> extensionSet = new LinkedHashSet<>();
+        for (String extension : extensions.split(",")) {
+            if (!extension.trim().isEmpty()) {
+                extensionSet.add(extension.trim().toLowerCase());
+            }
+        }
+        return new ThumbUploadService(uploadService, sizeList, extensionSet, maxFileSize, bufferSize, timeout
+                , new ThumbImageProcessor(maxPixels, quality), executor, thumbIndex);
+    }
+
+    @Override
+    public int getOrder() {
+        return 90;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+}
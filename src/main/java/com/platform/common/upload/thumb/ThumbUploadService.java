@@ -0,0 +1,361 @@
+package com.platform.common.upload.thumb;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.io.file.FileNameUtil;
+import com.platform.common.upload.decorator.DelegatingUploadService;
+import com.platform.common.upload.service.UploadService;
+import com.platform.common.upload.service.UploadSource;
+import com.platform.common.upload.vo.DeleteFileVo;
+import com.platform.common.upload.vo.ThumbFileVo;
+import com.platform.common.upload.vo.UploadFileVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 上传图片时生成缩略图
+ * <p>
+ * 解码与原图上传同时进行（只解码一次）：本地文件直接读取文件，其他文件从上传读取的数据中分出，原图只读一次；
+ * 各尺寸的缩略图在线程池中并行生成并上传到同一存储，删除原图时一并删除；
+ * 缩略图失败不影响原图，只记录日志
+ */
+@Slf4j
+public class ThumbUploadService extends DelegatingUploadService {
+
+    /**
+     * 缩略图尺寸（宽高以内等比缩放）
+     */
+    private final List<Dimension> sizeList;
+
+    /**
+     * 生成缩略图的后缀（小写）
+     */
+    private final Set<String> extensionSet;
+
+    /**
+     * 超过该大小（字节）的图片不生成缩略图
+     */
+    private final long maxFileSize;
+
+    /**
+     * 解码落后上传超过该大小（字节）时不生成缩略图
+     */
+    private final long bufferSize;
+
+    /**
+     * 等待缩略图的时间（毫秒）
+     */
+    private final long timeout;
+
+    private final ThumbImageProcessor imageProcessor;
+
+    private final ExecutorService executor;
+
+    private final ThumbIndex thumbIndex;
+
+    public ThumbUploadService(UploadService delegate, List<Dimension> sizeList, Set<String> extensionSet
+            , long maxFileSize, long bufferSize, long timeout, ThumbImageProcessor imageProcessor
+            , ExecutorService executor, ThumbIndex thumbIndex) {
+        super(delegate);
+        this.sizeList = sizeList;
+        this.extensionSet = extensionSet;
+        this.maxFileSize = maxFileSize;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.imageProcessor = imageProcessor;
+        this.executor = executor;
+        this.thumbIndex = thumbIndex;
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file) {
+        return upload(file.getOriginalFilename(), file.getSize(), null
+                , imageTee -> delegate.uploadFile(imageTee == null ? file : new ImageTeeMultipartFile(file, imageTee)));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file) {
+        return upload(file.getName(), file.length(), file.toPath(), imageTee -> delegate.uploadFile(file));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(UploadSource source) {
+        return upload(source.getFileName(), source.getLength(), source.getPath()
+                , imageTee -> delegate.uploadFile(imageTee == null ? source : source.wrap(imageTee::tee)));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(MultipartFile file, String uploadId) {
+        return upload(file.getOriginalFilename(), file.getSize(), null, imageTee -> delegate.uploadFile(
+                imageTee == null ? file : new ImageTeeMultipartFile(file, imageTee), uploadId));
+    }
+
+    @Override
+    public UploadFileVo uploadFile(File file, String uploadId) {
+        return upload(file.getName(), file.length(), file.toPath(), imageTee -> delegate.uploadFile(file, uploadId));
+    }
+
+    @Override
+    public List<UploadFileVo> uploadFiles(List<File> fileList) {
+        List<String> nameList = new ArrayList<>(fileList.size());
+        List<Future<ThumbImageProcessor.DecodedImage>> decodeList = new ArrayList<>(fileList.size());
+        for (File file : fileList) {
+            nameList.add(file.getName());
+            decodeList.add(isImage(file.getName(), file.length())
+                    ? decode(file.getName(), () -> new FileInputStream(file)) : null);
+        }
+        return attach(delegate.uploadFiles(fileList), nameList, decodeList);
+    }
+
+    @Override
+    public List<UploadFileVo> uploadMultipartFiles(List<MultipartFile> fileList) {
+        List<String> nameList = new ArrayList<>(fileList.size());
+        List<ImageTee> teeList = new ArrayList<>(fileList.size());
+        List<Future<ThumbImageProcessor.DecodedImage>> decodeList = new ArrayList<>(fileList.size());
+        List<MultipartFile> uploadList = new ArrayList<>(fileList.size());
+        for (MultipartFile file : fileList) {
+            nameList.add(file.getOriginalFilename());
+            ImageTee imageTee = isImage(file.getOriginalFilename(), file.getSize())
+                    ? new ImageTee(maxFileSize, bufferSize) : null;
+            Future<ThumbImageProcessor.DecodedImage> decode = imageTee == null ? null
+                    : decode(file.getOriginalFilename(), imageTee::getInputStream);
+            if (decode == null) {
+                imageTee = null;
+            }
+            teeList.add(imageTee);
+            decodeList.add(decode);
+            uploadList.add(imageTee == null ? file : new ImageTeeMultipartFile(file, imageTee));
+        }
+        List<UploadFileVo> resultList = null;
+        try {
+            resultList = delegate.uploadMultipartFiles(uploadList);
+        } finally {
+            for (int i = 0; i < fileList.size(); i++) {
+                if (resultList == null) {
+                    abort(teeList.get(i), decodeList.get(i));
+                } else {
+                    decodeList.set(i, finish(teeList.get(i), fileList.get(i).getSize(), decodeList.get(i)));
+                }
+            }
+        }
+        return attach(resultList, nameList, decodeList);
+    }
+
+    @Override
+    public boolean delFile(List<String> dataList) {
+        return delFiles(dataList).stream().allMatch(DeleteFileVo::getSuccess);
+    }
+
+    /**
+     * 原图删除成功后删除其缩略图，缩略图删除失败只记录日志
+     */
+    @Override
+    public List<DeleteFileVo> delFiles(List<String> fileKeys) {
+        List<DeleteFileVo> resultList = delegate.delFiles(fileKeys);
+        List<String> thumbKeys = new ArrayList<>();
+        for (DeleteFileVo result : resultList) {
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                List<String> thumbList = thumbIndex.remove(result.getFileKey());
+                if (thumbList != null) {
+                    thumbKeys.addAll(thumbList);
+                }
+            }
+        }
+        if (thumbKeys.isEmpty()) {
+            return resultList;
+        }
+        try {
+            for (DeleteFileVo result : delegate.delFiles(thumbKeys)) {
+                if (!Boolean.TRUE.equals(result.getSuccess())) {
+                    log.warn("缩略图删除失败：{}，{}", result.getFileKey(), result.getErrorMsg());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("缩略图删除失败：" + thumbKeys, e);
+        }
+        return resultList;
+    }
+
+    /**
+     * 上传并生成缩略图
+     *
+     * @param path     本地文件，解码直接读取文件；不是本地文件时为null，解码从上传读取的数据中分出
+     * @param uploader 上传，分出数据时传入分发对象，否则传入null
+     */
+    private UploadFileVo upload(String fileName, long size, Path path, Function<ImageTee, UploadFileVo> uploader) {
+        if (!isImage(fileName, size)) {
+            return uploader.apply(null);
+        }
+        ImageTee imageTee = path == null ? new ImageTee(maxFileSize, bufferSize) : null;
+        Future<ThumbImageProcessor.DecodedImage> decode = decode(fileName
+                , imageTee == null ? () -> Files.newInputStream(path) : imageTee::getInputStream);
+        if (decode == null) {
+            return uploader.apply(null);
+        }
+        UploadFileVo fileVo = null;
+        try {
+            fileVo = uploader.apply(imageTee);
+        } finally {
+            if (fileVo == null) {
+                abort(imageTee, decode);
+            }
+        }
+        return attach(fileVo, fileName, finish(imageTee, size, decode));
+    }
+
+    /**
+     * 是否生成缩略图，大小未知（-1）时按分出的数据限制大小
+     */
+    private boolean isImage(String fileName, long size) {
+        return !StringUtils.isEmpty(fileName) && size != 0 && size <= maxFileSize
+                && extensionSet.contains(FileNameUtil.extName(fileName).toLowerCase());
+    }
+
+    /**
+     * 提交解码，队列已满时不生成缩略图，返回null
+     */
+    private Future<ThumbImageProcessor.DecodedImage> decode(String fileName, InputStreamSource source) {
+        try {
+            return executor.submit(() -> imageProcessor.decode(source.getInputStream()));
+        } catch (RejectedExecutionException e) {
+            log.warn("缩略图队列已满，不生成缩略图：" + fileName);
+            return null;
+        }
+    }
+
+    /**
+     * 上传完成，上传未读完分出的输入流时取消解码，返回null
+     */
+    private Future<ThumbImageProcessor.DecodedImage> finish(ImageTee imageTee, long size
+            , Future<ThumbImageProcessor.DecodedImage> decode) {
+        if (imageTee == null || imageTee.finish(size)) {
+            return decode;
+        }
+        decode.cancel(true);
+        return null;
+    }
+
+    /**
+     * 上传失败，取消解码
+     */
+    private static void abort(ImageTee imageTee, Future<ThumbImageProcessor.DecodedImage> decode) {
+        if (imageTee != null) {
+            imageTee.abort("上传失败");
+        }
+        if (decode != null) {
+            decode.cancel(true);
+        }
+    }
+
+    /**
+     * 批量上传结果附加缩略图，上传失败的取消解码
+     */
+    private List<UploadFileVo> attach(List<UploadFileVo> resultList, List<String> nameList
+            , List<Future<ThumbImageProcessor.DecodedImage>> decodeList) {
+        List<UploadFileVo> dataList = new ArrayList<>(resultList.size());
+        for (int i = 0; i < resultList.size(); i++) {
+            UploadFileVo fileVo = resultList.get(i);
+            Future<ThumbImageProcessor.DecodedImage> decode = decodeList.get(i);
+            if (fileVo == null || Boolean.FALSE.equals(fileVo.getSuccess())) {
+                if (decode != null) {
+                    decode.cancel(true);
+                }
+                dataList.add(fileVo);
+            } else {
+                dataList.add(attach(fileVo, nameList.get(i), decode));
+            }
+        }
+        return dataList;
+    }
+
+    /**
+     * 并行生成各尺寸的缩略图，附加到上传结果（复制一份，不修改下层可能缓存的对象）
+     */
+    private UploadFileVo attach(UploadFileVo fileVo, String fileName, Future<ThumbImageProcessor.DecodedImage> decode) {
+        if (decode == null || fileVo == null) {
+            return fileVo;
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        List<Future<ThumbFileVo>> futureList = new ArrayList<>(sizeList.size());
+        try {
+            ThumbImageProcessor.DecodedImage image = decode.get(timeout, TimeUnit.MILLISECONDS);
+            if (image == null) {
+                return fileVo;
+            }
+            for (Dimension size : sizeList) {
+                // 原图小于缩略图尺寸时不生成
+                if (image.getWidth() <= size.width && image.getHeight() <= size.height) {
+                    continue;
+                }
+                futureList.add(submit(() -> uploadThumb(image, fileName, size)));
+            }
+        } catch (Exception e) {
+            decode.cancel(true);
+            log.warn("图片解码失败：" + fileName, e);
+            return fileVo;
+        }
+        List<ThumbFileVo> thumbList = new ArrayList<>(futureList.size());
+        for (Future<ThumbFileVo> future : futureList) {
+            try {
+                thumbList.add(future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+            } catch (Exception e) {
+                future.cancel(true);
+                log.warn("缩略图生成失败：" + fileName, e);
+            }
+        }
+        if (!thumbList.isEmpty()) {
+            thumbIndex.put(fileVo.getFileKey(), thumbList.stream().map(ThumbFileVo::getFileKey).collect(Collectors.toList()));
+        }
+        return BeanUtil.copyProperties(fileVo, UploadFileVo.class).setThumbs(thumbList);
+    }
+
+    /**
+     * 提交缩略图生成，队列已满时由上传线程执行
+     */
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<T> future = new FutureTask<>(task);
+            future.run();
+            return future;
+        }
+    }
+
+    private ThumbFileVo uploadThumb(ThumbImageProcessor.DecodedImage image, String fileName, Dimension size)
+            throws Exception {
+        // 按原图比例计算缩略图尺寸
+        double scale = Math.min((double) size.width / image.getWidth(), (double) size.height / image.getHeight());
+        int width = Math.max((int) Math.round(image.getWidth() * scale), 1);
+        int height = Math.max((int) Math.round(image.getHeight() * scale), 1);
+        boolean alpha = "png".equals(image.getFormat()) || "gif".equals(image.getFormat());
+        String format = alpha ? "png" : "jpg";
+        byte[] data = imageProcessor.encode(imageProcessor.resize(image.getImage(), width, height, alpha), format);
+        String thumbName = FileNameUtil.mainName(fileName) + "_" + width + "x" + height + "." + format;
+        UploadFileVo thumbVo = delegate.uploadFile(new BytesMultipartFile(thumbName, "image/" + (alpha ? "png" : "jpeg"), data));
+        return new ThumbFileVo()
+                .setWidth(width)
+                .setHeight(height)
+                .setFileKey(thumbVo.getFileKey())
+                .setFilePath(thumbVo.getFilePath());
+    }
+
+}
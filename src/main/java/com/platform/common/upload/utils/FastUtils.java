@@ -1,9 +1,10 @@
 package com.platform.common.upload.utils;
 
-import com.github.tobato.fastdfs.domain.conn.FdfsWebServer;
 import com.github.tobato.fastdfs.domain.fdfs.StorePath;
-import com.github.tobato.fastdfs.domain.fdfs.ThumbImageConfig;
 import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.platform.common.upload.enums.UploadTypeEnum;
+import com.platform.common.upload.route.ConditionalOnUploadType;
+import com.platform.common.upload.service.UploadService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.stereotype.Component;
@@ -11,38 +12,69 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.util.Set;
+import java.io.InputStream;
+import java.util.List;
 
+/**
+ * fast工具类
+ *
+ * @deprecated 下个版本移除，请注入 {@link FastFileStorageClient} 或使用 UploadService
+ */
 @Slf4j
+@Deprecated
 @Component
+@ConditionalOnUploadType(UploadTypeEnum.FAST)
 public class FastUtils {
+
     private static FastFileStorageClient fastFileStorageClient;
 
-    public FastUtils(ThumbImageConfig thumbImageConfig, FastFileStorageClient fastFileStorageClient, FdfsWebServer fdfsWebServer) {
+    private static UploadService uploadFastService;
+
+    public FastUtils(FastFileStorageClient fastFileStorageClient, List<UploadService> serviceList) {
         FastUtils.fastFileStorageClient = fastFileStorageClient;
+        // 经过装饰的fast存储，不直接注入实现类
+        FastUtils.uploadFastService = serviceList.stream()
+                .filter(uploadService -> uploadService.getUploadType() == UploadTypeEnum.FAST)
+                .findFirst()
+                .orElse(null);
     }
 
     public static StorePath uploadFile(MultipartFile multipartFile) {
-        StorePath storePath;
-        try {
-            storePath = fastFileStorageClient.uploadFile(multipartFile.getInputStream(), multipartFile.getSize(), FilenameUtils.getExtension(multipartFile.getOriginalFilename()), (Set) null);
-        } catch (Exception var6) {
-            log.error(var6.getMessage(), var6);
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            return fastFileStorageClient.uploadFile(inputStream, multipartFile.getSize()
+                    , FilenameUtils.getExtension(multipartFile.getOriginalFilename()), null);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
         }
-        return storePath;
     }
 
     public static StorePath uploadFile(File file) {
-        StorePath storePath;
-        try {
-            FileInputStream inputStream = new FileInputStream(file);
-            storePath = fastFileStorageClient.uploadFile(inputStream, file.length(), FilenameUtils.getExtension(file.getName()), null);
-        } catch (Exception var6) {
-            log.error(var6.getMessage(), var6);
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return fastFileStorageClient.uploadFile(inputStream, file.length()
+                    , FilenameUtils.getExtension(file.getName()), null);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
             throw new RuntimeException("文件上传失败");
         }
-        return storePath;
+    }
+
+    /**
+     * 删除文件
+     *
+     * @param fileKey 完整路径（group/path）
+     */
+    public static void deleteFile(String fileKey) {
+        fastFileStorageClient.deleteFile(fileKey);
+    }
+
+    /**
+     * 下载文件（storage原生接口，支持范围读取），使用后需关闭
+     *
+     * @param length 读取长度，小于0表示读取到末尾
+     */
+    public static InputStream downloadFile(String fileKey, long offset, long length) {
+        return uploadFastService.getInputStream(fileKey, offset, length);
     }
 
 }
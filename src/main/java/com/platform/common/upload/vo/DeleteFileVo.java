@@ -0,0 +1,26 @@
+package com.platform.common.upload.vo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 文件删除
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+public class DeleteFileVo {
+
+    /**
+     * 文件名称
+     */
+    private String fileKey;
+    /**
+     * 是否成功
+     */
+    private Boolean success;
+    /**
+     * 失败原因
+     */
+    private String errorMsg;
+
+}
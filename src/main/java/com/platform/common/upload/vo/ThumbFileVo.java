@@ -0,0 +1,30 @@
+package com.platform.common.upload.vo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 缩略图
+ */
+@Data
+@Accessors(chain = true) // 链式调用
+public class ThumbFileVo {
+
+    /**
+     * 宽度
+     */
+    private Integer width;
+    /**
+     * 高度
+     */
+    private Integer height;
+    /**
+     * 文件名称
+     */
+    private String fileKey;
+    /**
+     * 文件地址
+     */
+    private String filePath;
+
+}
@@ -1,8 +1,11 @@
 package com.platform.common.upload.vo;
 
+import com.platform.common.upload.enums.UploadTypeEnum;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
+import java.util.List;
+
 /**
  * 文件上传
  */
@@ -22,5 +25,33 @@ public class UploadFileVo {
      * 文件地址
      */
     private String filePath;
+    /**
+     * 存储类型（多存储路由）
+     */
+    private UploadTypeEnum uploadType;
+    /**
+     * 缩略图（图片处理）
+     */
+    private List<ThumbFileVo> thumbs;
+    /**
+     * MD5（完整性校验）
+     */
+    private String md5;
+    /**
+     * CRC64（完整性校验）
+     */
+    private String crc64;
+    /**
+     * SHA-256（完整性校验）
+     */
+    private String sha256;
+    /**
+     * 是否成功（批量上传）
+     */
+    private Boolean success;
+    /**
+     * 失败原因（批量上传）
+     */
+    private String errorMsg;
 
 }